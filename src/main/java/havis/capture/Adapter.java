@@ -1,5 +1,9 @@
 package havis.capture;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -127,6 +131,43 @@ public interface Adapter {
 	 */
 	void setValue(String device, String field, Object value) throws AdapterException;
 
+    /**
+	 * Retrieves the current values of the fields from the corresponding physical
+     * sensors/actors. Implementations able to read several fields at once should
+     * override this method, by default each field is read separately. If only
+     * some fields fail, a {@link PartialValuesException} with the values of the
+     * other fields is thrown.
+	 * 
+	 * @param fields    The fields to read.
+	 * @return          The requested values as list of key-value-pairs where the key is the field.
+	 */
+	default Map<FieldRef, Object> getValues(Collection<FieldRef> fields) throws AdapterException {
+		Map<FieldRef, Object> values = new LinkedHashMap<>();
+		Map<FieldRef, AdapterException> failures = new LinkedHashMap<>();
+		for (FieldRef field : fields) {
+			try {
+				values.put(field, getValue(field.getDevice(), field.getField()));
+			} catch (AdapterException e) {
+				failures.put(field, e);
+			}
+		}
+		if (!failures.isEmpty())
+			throw new PartialValuesException(values, failures);
+		return values;
+	}
+
+    /**
+	 * Sets the current values of the fields on the corresponding physical
+     * sensors/actors. Implementations able to write several fields at once should
+     * override this method, by default each field is written separately.
+	 * 
+	 * @param values    The values to set as list of key-value-pairs where the key is the field.
+	 */
+	default void setValues(Map<FieldRef, Object> values) throws AdapterException {
+		for (Map.Entry<FieldRef, Object> value : values.entrySet())
+			setValue(value.getKey().getDevice(), value.getKey().getField(), value.getValue());
+	}
+
     /**
 	 * Mark the field with id field of the device with id device as observed.
      * Consequently the implementation should start to send FieldValueChangedEvents
@@ -137,6 +178,20 @@ public interface Adapter {
 	 */
 	void subscribe(String device, String field) throws AdapterException;
 
+    /**
+	 * Mark the field as observed with options, e.g. sampling interval,
+     * deadband and queue size. Only called if the adapter declares the
+     * OPTIONS capability, it is called again with the merged options of all
+     * subscribers whenever they change. By default the options are ignored.
+	 * 
+	 * @param device    The id of the device.
+     * @param field     The id of the field.
+     * @param options   The subscription options.
+	 */
+	default void subscribe(String device, String field, SubscriptionOptions options) throws AdapterException {
+		subscribe(device, field);
+	}
+
     /**
 	 * Remove the observe mark from field with id field of the device with id device.
      * Consequently the implementation should stop to send FieldValueChangedEvents
@@ -147,6 +202,53 @@ public interface Adapter {
 	 */
 	void unsubscribe(String device, String field) throws AdapterException;
 
+    /**
+	 * Mark all fields as observed at once. By default the fields are
+     * subscribed one by one, if one fails the fields subscribed before are
+     * unsubscribed again.
+	 * 
+	 * @param fields    The fields.
+	 */
+	default void subscribe(Collection<FieldRef> fields) throws AdapterException {
+		List<FieldRef> subscribed = new ArrayList<>();
+		try {
+			for (FieldRef field : fields) {
+				subscribe(field.getDevice(), field.getField());
+				subscribed.add(field);
+			}
+		} catch (AdapterException | RuntimeException e) {
+			for (FieldRef field : subscribed) {
+				try {
+					unsubscribe(field.getDevice(), field.getField());
+				} catch (AdapterException | RuntimeException f) {
+					e.addSuppressed(f);
+				}
+			}
+			throw e;
+		}
+	}
+
+    /**
+	 * Remove the observe mark from all fields at once. By default the fields
+     * are unsubscribed one by one, the first failure is thrown after all
+     * fields have been processed.
+	 * 
+	 * @param fields    The fields.
+	 */
+	default void unsubscribe(Collection<FieldRef> fields) throws AdapterException {
+		AdapterException exception = null;
+		for (FieldRef field : fields) {
+			try {
+				unsubscribe(field.getDevice(), field.getField());
+			} catch (AdapterException e) {
+				if (exception == null)
+					exception = e;
+			}
+		}
+		if (exception != null)
+			throw exception;
+	}
+
     /**
 	 * Adds a new device.
 	 * 
@@ -0,0 +1,16 @@
+package havis.capture;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the capabilities of an adapter, so the adapter manager can choose
+ * the fastest way to call it.
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdapterCapabilities {
+	Capability[] value();
+}
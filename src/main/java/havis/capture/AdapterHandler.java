@@ -1,6 +1,12 @@
 package havis.capture;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface AdapterHandler extends AutoCloseable {
 
@@ -13,7 +19,19 @@ public interface AdapterHandler extends AutoCloseable {
 	void setListener(AdapterListener listener) throws AdapterException;
 
 	/**
-	 * Gets the current device list
+	 * Sets whether the listener receives the usability changes of all
+	 * devices. By default only usability changes of devices with subscribed
+	 * fields are passed to the listener.
+	 * 
+	 * @param broadcast
+	 *            True to receive the usability changes of all devices
+	 */
+	default void setUsabilityBroadcast(boolean broadcast) throws AdapterException {
+	}
+
+	/**
+	 * Gets the current device list. The list is an unmodifiable snapshot
+	 * which is renewed whenever the devices change.
 	 * 
 	 * @return The devices
 	 */
@@ -104,7 +122,9 @@ public interface AdapterHandler extends AutoCloseable {
 	void setProperty(String device, String field, String name, String value) throws AdapterException;
 
 	/**
-	 * Gets the device field value
+	 * Gets the device field value. The last known value is returned if it is
+	 * not older than the max age defined by the field property
+	 * {@link AdapterManager#MAX_AGE}.
 	 * 
 	 * @param device
 	 *            The device id
@@ -114,6 +134,22 @@ public interface AdapterHandler extends AutoCloseable {
 	 */
 	Object getValue(String device, String field) throws AdapterException;
 
+	/**
+	 * Gets the last known device field value if it is not older than the
+	 * max age, otherwise the value is read from the device
+	 * 
+	 * @param device
+	 *            The device id
+	 * @param field
+	 *            The field id
+	 * @param maxAge
+	 *            The max age of the value in milliseconds
+	 * @return The device field value
+	 */
+	default Object getValue(String device, String field, long maxAge) throws AdapterException {
+		return getValue(device, field);
+	}
+
 	/**
 	 * Sets the device field value
 	 * 
@@ -126,6 +162,41 @@ public interface AdapterHandler extends AutoCloseable {
 	 */
 	void setValue(String device, String field, Object value) throws AdapterException;
 
+	/**
+	 * Gets the values of several device fields. If only some fields fail, a
+	 * {@link PartialValuesException} with the values of the other fields is
+	 * thrown.
+	 * 
+	 * @param fields
+	 *            The fields
+	 * @return The values by field
+	 */
+	default Map<FieldRef, Object> getValues(Collection<FieldRef> fields) throws AdapterException {
+		Map<FieldRef, Object> values = new LinkedHashMap<>();
+		Map<FieldRef, AdapterException> failures = new LinkedHashMap<>();
+		for (FieldRef field : fields) {
+			try {
+				values.put(field, getValue(field.getDevice(), field.getField()));
+			} catch (AdapterException e) {
+				failures.put(field, e);
+			}
+		}
+		if (!failures.isEmpty())
+			throw new PartialValuesException(values, failures);
+		return values;
+	}
+
+	/**
+	 * Sets the values of several device fields
+	 * 
+	 * @param values
+	 *            The values by field
+	 */
+	default void setValues(Map<FieldRef, Object> values) throws AdapterException {
+		for (Map.Entry<FieldRef, Object> value : values.entrySet())
+			setValue(value.getKey().getDevice(), value.getKey().getField(), value.getValue());
+	}
+
 	/**
 	 * Subscribes to a device field
 	 * 
@@ -136,6 +207,21 @@ public interface AdapterHandler extends AutoCloseable {
 	 */
 	void subscribe(String device, String field) throws AdapterException;
 
+	/**
+	 * Subscribes to a device field with options. A previous subscription of
+	 * the field is replaced.
+	 * 
+	 * @param device
+	 *            The device id
+	 * @param field
+	 *            The field id
+	 * @param options
+	 *            The subscription options
+	 */
+	default void subscribe(String device, String field, SubscriptionOptions options) throws AdapterException {
+		subscribe(device, field);
+	}
+
 	/**
 	 * Unsubscribes from a device field
 	 * 
@@ -145,4 +231,124 @@ public interface AdapterHandler extends AutoCloseable {
 	 *            The field id
 	 */
 	void unsubscribe(String device, String field) throws AdapterException;
-}
\ No newline at end of file
+
+	/**
+	 * Subscribes to all fields at once. Fields subscribed with options
+	 * before are subscribed without options.
+	 * 
+	 * @param fields
+	 *            The fields
+	 */
+	default void subscribe(Collection<FieldRef> fields) throws AdapterException {
+		for (FieldRef field : fields)
+			subscribe(field.getDevice(), field.getField());
+	}
+
+	/**
+	 * Unsubscribes from all fields at once
+	 * 
+	 * @param fields
+	 *            The fields
+	 */
+	default void unsubscribe(Collection<FieldRef> fields) throws AdapterException {
+		for (FieldRef field : fields)
+			unsubscribe(field.getDevice(), field.getField());
+	}
+
+	/**
+	 * Gets the subscribed fields
+	 * 
+	 * @return The fields, empty if the handler does not track subscriptions
+	 */
+	default Set<FieldRef> getSubscriptions() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Replaces the subscribed fields. Only fields missing from the current
+	 * subscriptions are subscribed and only fields missing from the new
+	 * subscriptions are unsubscribed, the others are kept with their
+	 * options.
+	 * 
+	 * @param fields
+	 *            The fields to subscribe
+	 */
+	default void setSubscriptions(Collection<FieldRef> fields) throws AdapterException {
+		Set<FieldRef> current = getSubscriptions();
+		List<FieldRef> removed = new ArrayList<>();
+		for (FieldRef field : current)
+			if (!fields.contains(field))
+				removed.add(field);
+		List<FieldRef> added = new ArrayList<>();
+		for (FieldRef field : fields)
+			if (!current.contains(field))
+				added.add(field);
+		unsubscribe(removed);
+		subscribe(added);
+	}
+
+	/**
+	 * Subscribes to all fields matching the device and field pattern. A
+	 * pattern is either an id, a prefix followed by '*' or a single '*'
+	 * matching all ids, e.g. device "*" and field "temperature". A field
+	 * matching several subscriptions is passed once per subscription.
+	 * 
+	 * @param device
+	 *            The device id pattern
+	 * @param field
+	 *            The field id pattern
+	 */
+	default void subscribePattern(String device, String field) throws AdapterException {
+		subscribePattern(device, field, null);
+	}
+
+	/**
+	 * Subscribes to all fields matching the device and field pattern with
+	 * options. A previous subscription of the pattern is replaced.
+	 * 
+	 * @param device
+	 *            The device id pattern
+	 * @param field
+	 *            The field id pattern
+	 * @param options
+	 *            The subscription options
+	 */
+	default void subscribePattern(String device, String field, SubscriptionOptions options) throws AdapterException {
+		Map<String, Device> devices = getDevices();
+		if (devices != null) {
+			for (Map.Entry<String, Device> d : devices.entrySet())
+				if (PatternIndex.matches(device, d.getKey()) && d.getValue().getFields() != null)
+					for (String f : d.getValue().getFields().keySet())
+						if (PatternIndex.matches(field, f))
+							subscribe(d.getKey(), f, options);
+		}
+	}
+
+	/**
+	 * Unsubscribes from all fields matching the device and field pattern
+	 * 
+	 * @param device
+	 *            The device id pattern
+	 * @param field
+	 *            The field id pattern
+	 */
+	default void unsubscribePattern(String device, String field) throws AdapterException {
+		Map<String, Device> devices = getDevices();
+		if (devices != null) {
+			for (Map.Entry<String, Device> d : devices.entrySet())
+				if (PatternIndex.matches(device, d.getKey()) && d.getValue().getFields() != null)
+					for (String f : d.getValue().getFields().keySet())
+						if (PatternIndex.matches(field, f))
+							unsubscribe(d.getKey(), f);
+		}
+	}
+
+	/**
+	 * Gets the delivery metrics of the events passed to the listener
+	 * 
+	 * @return The metrics or null if not available
+	 */
+	default MailboxMetrics getMetrics() {
+		return null;
+	}
+}
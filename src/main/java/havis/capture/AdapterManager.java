@@ -1,95 +1,232 @@
 package havis.capture;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 public class AdapterManager {
 
-	private class Key {
+	private static class Expansion {
 
-		private String device;
-		private String field;
+		private FieldRef pattern;
+		private AdapterListener listener;
+		private SubscriptionOptions options;
+		private Set<FieldRef> fields = new HashSet<>();
 
-		private Key(String device, String field) {
-			this.device = device;
-			this.field = field;
+		private Expansion(FieldRef pattern, AdapterListener listener, SubscriptionOptions options) {
+			this.pattern = pattern;
+			this.listener = listener;
+			this.options = options;
 		}
+	}
 
-		private boolean equals(Key key) {
-			return Objects.equals(device, key.device) && Objects.equals(field, key.field);
-		}
+	private static class Subscription {
 
-		@Override
-		public boolean equals(Object obj) {
-			return obj instanceof Key && equals((Key) obj);
+		private AdapterListener listener;
+		private SubscriptionOptions options;
+		// handle of the listener in the listeners of the field
+		private ListenerList.Node<AdapterListener> node;
+
+		private Subscription(AdapterListener listener, SubscriptionOptions options) {
+			this.listener = listener;
+			this.options = options;
 		}
+	}
 
-		@Override
-		public int hashCode() {
-			return Objects.hash(device, field);
+	/**
+	 * Pending adapter read of a field, which concurrent readers join
+	 */
+	private static class Flight extends CompletableFuture<Object> {
+
+		// number of writes of the field when the read started
+		private final long writes;
+
+		private Flight(long writes) {
+			this.writes = writes;
 		}
 	}
 
+	/**
+	 * Specifies the field property name for the default max age in
+	 * milliseconds of a cached value
+	 */
+	public final static String MAX_AGE = "havis.capture.maxAge";
+
 	private final static Logger log = Logger.getLogger(AdapterManager.class.getName());
 
-	private Lock lock = new ReentrantLock();
+	private DeviceLocks locks;
+	private DeviceLocks registry = new DeviceLocks(Environment.LOCK_STRIPES, DeviceLocks.Mode.DEVICE);
+	private Set<Capability> capabilities = EnumSet.noneOf(Capability.class);
 	private Adapter adapter;
-	private Map<Key, List<AdapterListener>> listeners = new ConcurrentHashMap<>();
-	private List<AdapterListener> capsules = new CopyOnWriteArrayList<>();
-	private ExecutorService executor = Executors.newSingleThreadExecutor();
+	private PatternIndex patterns = new PatternIndex();
+	// expanded fields of the pattern subscriptions
+	private List<Expansion> expansions = new ArrayList<>();
+	// true while an expansion to discovered devices is pending
+	private AtomicBoolean expanding = new AtomicBoolean();
+	// adapter subscriptions with the options of all exact and pattern subscribers
+	private Map<FieldRef, List<SubscriptionOptions>> subscriptions = new ConcurrentHashMap<>();
+	private ListenerList<AdapterListener> capsules = new ListenerList<>();
+	private ListenerList<Mailbox> mailboxes = new ListenerList<>();
+	// capsules by device with the number of subscribed fields
+	private Map<String, Map<AdapterListener, Integer>> watchers = new ConcurrentHashMap<>();
+	// capsules receiving the usability changes of all devices
+	private Set<AdapterListener> broadcasts = ConcurrentHashMap.newKeySet();
+	private Map<FieldRef, Flight> flights = new ConcurrentHashMap<>();
+	// listeners and last known values by field handle
+	private FieldHandles handles = new FieldHandles();
+	private Map<FieldRef, Long> maxAges = new ConcurrentHashMap<>();
+	private Object versionLock = new Object();
+	private long version;
+	private volatile Inventory inventory;
+
+	private FieldHandleListener router = new FieldHandleListener() {
+		/**
+		 * @return The capsules interested in the usability changes of the
+		 *         device, each capsule once
+		 */
+		private Set<AdapterListener> capsules(String device) {
+			Set<AdapterListener> capsules = new LinkedHashSet<>(broadcasts);
+			if (device != null) {
+				Map<AdapterListener, Integer> watchers = AdapterManager.this.watchers.get(device);
+				if (watchers != null)
+					capsules.addAll(watchers.keySet());
+				patterns.collect(device, capsules);
+			}
+			return capsules;
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+			for (AdapterListener capsule : capsules(event.getDevice()))
+				capsule.usabilityChanged(source, event);
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+			for (AdapterListener capsule : capsules(event.getDevice()))
+				capsule.usabilityChanged(source, event);
+		}
+
+		@Override
+		public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+			route(source, handles.get(event.getDevice(), event.getField()), event);
+		}
+
+		@Override
+		public int getHandle(String device, String field) {
+			return handles.register(device, field).getHandle();
+		}
+
+		@Override
+		public void valueChanged(Adapter source, int handle, FieldValueChangedEvent event) {
+			FieldHandles.Slot slot = handles.get(handle);
+			// the handle of a removed device is not reused
+			if (slot == null)
+				slot = handles.get(event.getDevice(), event.getField());
+			route(source, slot, event);
+		}
+
+		private void route(Adapter source, FieldHandles.Slot slot, FieldValueChangedEvent event) {
+			ListenerList<AdapterListener> listeners = slot != null ? slot.listeners : null;
+			if (listeners != null) {
+				Object[] targets = listeners.snapshot();
+				if (fanout != null && targets.length >= Environment.FANOUT_THRESHOLD) {
+					// waits for all listeners before the next event of the lane
+					fanout.invoke(new FanOut(targets, targets.length / fanout.getParallelism(), source, event));
+				} else {
+					for (Object target : targets)
+						((AdapterListener) target).valueChanged(source, event);
+				}
+			}
+			patterns.valueChanged(source, event);
+		}
+	};
 
-	private AdapterListener listener = new AdapterListener() {
+	private Dispatcher dispatcher = new Dispatcher(router, Environment.DISPATCH_LANES, Environment.DISPATCH_CAPACITY, Environment.DISPATCH_POLICY,
+			Environment.DISPATCH_RING ? Environment.DISPATCH_WAIT : null);
+	private ExecutorService delivery = Executors.newFixedThreadPool(Math.max(1, Environment.MAILBOX_THREADS));
+	private ExecutorService async = Executors.newFixedThreadPool(Environment.ASYNC_THREADS);
+	private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	// passes the values of fields with many listeners in parallel
+	private ForkJoinPool fanout = Environment.FANOUT_THRESHOLD > 0 ? new ForkJoinPool(Math.max(1, Environment.FANOUT_THREADS)) : null;
+	// guards the open state of the adapter
+	private Object lifecycle = new Object();
+	private boolean opened;
+	// incremented to cancel a pending linger
+	private long lingers;
+	private LongAdder opens = new LongAdder();
+	private LongAdder closes = new LongAdder();
+
+	private FieldHandleListener listener = new FieldHandleListener() {
 		@Override
-		public void usabilityChanged(final Adapter source, final DeviceUsabilityChangedEvent event) {
+		public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
 			if (event != null) {
-				executor.execute(new Runnable() {
-					@Override
-					public void run() {
-						for (AdapterListener capsule : capsules)
-							capsule.usabilityChanged(source, event);
-					}
-				});
+				setUsable(event.getDevice(), event.isUsable());
+				dispatcher.dispatch(source, event);
 			}
 		}
 
 		@Override
-		public void usabilityChanged(final Adapter source, final FieldUsabilityChangedEvent event) {
+		public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
 			if (event != null) {
-				executor.execute(new Runnable() {
-					@Override
-					public void run() {
-						for (AdapterListener capsule : capsules)
-							capsule.usabilityChanged(source, event);
-					}
-				});
+				// the inventory doesn't contain the usable state of fields
+				dispatcher.dispatch(source, event);
 			}
 		}
 
 		@Override
-		public void valueChanged(final Adapter source, final FieldValueChangedEvent event) {
+		public void valueChanged(Adapter source, FieldValueChangedEvent event) {
 			if (event != null) {
-				executor.execute(new Runnable() {
-					@Override
-					public void run() {
-						Key key = new Key(event.getDevice(), event.getField());
-						List<AdapterListener> listeners = AdapterManager.this.listeners.get(key);
-						if (listeners != null) {
-							for (AdapterListener listener : listeners)
-								listener.valueChanged(source, event);
-						}
-					}
-				});
+				FieldHandles.Slot slot = handles.register(event.getDevice(), event.getField());
+				slot.sample(event);
+				dispatcher.dispatch(source, slot.getHandle(), event);
+			}
+		}
+
+		@Override
+		public int getHandle(String device, String field) {
+			return handles.register(device, field).getHandle();
+		}
+
+		@Override
+		public void valueChanged(Adapter source, int handle, FieldValueChangedEvent event) {
+			if (event != null) {
+				FieldHandles.Slot slot = handles.get(handle);
+				if (slot == null)
+					slot = handles.register(event.getDevice(), event.getField());
+				slot.sample(event);
+				dispatcher.dispatch(source, slot.getHandle(), event);
 			}
 		}
 	};
@@ -101,187 +238,1368 @@ public class AdapterManager {
 		log.log(record);
 	}
 
+	/**
+	 * Passes primitive values unboxed if the listener accepts them
+	 */
+	private static void deliver(AdapterListener listener, Adapter source, FieldValueChangedEvent event) {
+		if (listener instanceof PrimitiveAdapterListener) {
+			PrimitiveAdapterListener primitive = (PrimitiveAdapterListener) listener;
+			if (event instanceof DoubleValueChangedEvent) {
+				primitive.valueChanged(source, (DoubleValueChangedEvent) event);
+				return;
+			}
+			if (event instanceof LongValueChangedEvent) {
+				primitive.valueChanged(source, (LongValueChangedEvent) event);
+				return;
+			}
+			if (event instanceof BooleanValueChangedEvent) {
+				primitive.valueChanged(source, (BooleanValueChangedEvent) event);
+				return;
+			}
+		}
+		listener.valueChanged(source, event);
+	}
+
 	public AdapterManager(Adapter adapter) {
 		this.adapter = adapter;
+		AdapterCapabilities capabilities = adapter.getClass().getAnnotation(AdapterCapabilities.class);
+		if (capabilities != null)
+			this.capabilities.addAll(Arrays.asList(capabilities.value()));
+		if (adapter instanceof AsyncAdapter)
+			this.capabilities.add(Capability.ASYNC);
+		else
+			this.capabilities.remove(Capability.ASYNC);
+		if (adapter.getClass().isAnnotationPresent(SerializedAdapter.class))
+			this.locks = new DeviceLocks(Environment.LOCK_STRIPES, DeviceLocks.Mode.GLOBAL);
+		else if (this.capabilities.contains(Capability.THREAD_SAFE))
+			this.locks = new DeviceLocks(Environment.LOCK_STRIPES, DeviceLocks.Mode.NONE);
+		else
+			this.locks = new DeviceLocks(Environment.LOCK_STRIPES, DeviceLocks.Mode.DEVICE);
+	}
+
+	/**
+	 * @return The capabilities of the adapter
+	 */
+	public Set<Capability> getCapabilities() {
+		return Collections.unmodifiableSet(capabilities);
 	}
 
 	private void open() throws AdapterException {
 		adapter.open(listener);
+		opens.increment();
 	}
 
 	private void close() throws AdapterException {
 		adapter.close();
+		closes.increment();
 	}
 
-	private Map<String, Device> getDevices() throws AdapterException {
-		lock.lock();
-		try {
-			return adapter.getDevices();
-		} finally {
-			lock.unlock();
+	/**
+	 * Opens the adapter if it is closed and cancels a pending linger. Must be
+	 * called with the lifecycle lock held.
+	 */
+	private void keepOpen() {
+		lingers++;
+		if (!opened) {
+			try {
+				open();
+				opened = true;
+			} catch (AdapterException e) {
+				log(Level.FINE, "Failed to open adapter ''{0}''", e, adapter.getClass().getName());
+			}
 		}
 	}
 
+	/**
+	 * Closes the adapter if it is open and unused. Must be called with the
+	 * lifecycle lock held.
+	 */
+	private void closeUnused() {
+		if (opened && capsules.isEmpty()) {
+			opened = false;
+			try {
+				close();
+			} catch (AdapterException e) {
+				log(Level.FINE, "Failed to close adapter ''{0}''", e, adapter.getClass().getName());
+			}
+		}
+	}
+
+	/**
+	 * Keeps the adapter open for the linger period, closes it afterwards if
+	 * no capsule has been added in between. Must be called with the lifecycle
+	 * lock held.
+	 */
+	private void linger() {
+		final long linger = ++lingers;
+		if (Environment.ADAPTER_LINGER > 0) {
+			try {
+				final Runnable close = new Runnable() {
+					@Override
+					public void run() {
+						synchronized (lifecycle) {
+							if (linger == lingers)
+								closeUnused();
+						}
+					}
+				};
+				// the scheduler only fires the timer, a slow close must not
+				// delay throttles and batches
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							async.execute(close);
+						} catch (RejectedExecutionException e) {
+							// disposed, the adapter has been closed
+						}
+					}
+				}, Environment.ADAPTER_LINGER, TimeUnit.MILLISECONDS);
+				return;
+			} catch (RejectedExecutionException e) {
+				// disposed, close immediately
+			}
+		}
+		closeUnused();
+	}
+
+	/**
+	 * Opens the adapter before the first handler is created. Unless a handler
+	 * is created in time, the adapter is closed after the linger period.
+	 */
+	public void prewarm() {
+		synchronized (lifecycle) {
+			keepOpen();
+			if (capsules.isEmpty() && Environment.ADAPTER_LINGER > 0)
+				linger();
+		}
+	}
+
+	/**
+	 * Invalidates the device inventory snapshot
+	 */
+	private void invalidate() {
+		synchronized (versionLock) {
+			version++;
+			inventory = null;
+			maxAges.clear();
+		}
+		expandLater();
+	}
+
+	/**
+	 * Updates the usable state of the device in the inventory snapshot. The
+	 * snapshot is invalidated if it doesn't contain the device or can't copy
+	 * it, the max ages are kept as they only depend on the field properties.
+	 * An unknown device may have been discovered by the adapter, so the
+	 * patterns are expanded.
+	 */
+	private void setUsable(String device, boolean usable) {
+		Inventory inventory;
+		synchronized (versionLock) {
+			version++;
+			inventory = this.inventory;
+			this.inventory = inventory = inventory != null ? inventory.setUsable(version, device, usable) : null;
+		}
+		if (inventory == null)
+			expandLater();
+	}
+
+	/**
+	 * Gets the device inventory snapshot. The snapshot is created from the
+	 * adapter devices if it has been invalidated.
+	 * 
+	 * @return The device inventory
+	 * @throws AdapterException
+	 *             If the adapter failed to get the devices
+	 */
+	public Inventory getInventory() throws AdapterException {
+		Inventory inventory = this.inventory;
+		if (inventory == null) {
+			long version;
+			synchronized (versionLock) {
+				version = this.version;
+			}
+			locks.lock(false);
+			try {
+				inventory = new Inventory(version, adapter.getDevices());
+			} finally {
+				locks.unlock(false);
+			}
+			synchronized (versionLock) {
+				if (this.version == version)
+					this.inventory = inventory;
+			}
+		}
+		return inventory;
+	}
+
+	private Map<String, Device> getDevices() throws AdapterException {
+		return getInventory().getDevices();
+	}
+
 	private String getLabel(String device) throws AdapterException {
-		lock.lock();
+		locks.lock(device, false);
 		try {
 			return adapter.getLabel(device);
 		} finally {
-			lock.unlock();
+			locks.unlock(device, false);
 		}
 	}
 
 	private String getLabel(String device, String field) throws AdapterException {
-		lock.lock();
+		locks.lock(device, false);
 		try {
 			return adapter.getLabel(device, field);
 		} finally {
-			lock.unlock();
+			locks.unlock(device, false);
 		}
 	}
 
 	private void setLabel(String device, String value) throws AdapterException {
-		lock.lock();
+		locks.lock(device, true);
 		try {
 			adapter.setLabel(device, value);
+			invalidate();
 		} finally {
-			lock.unlock();
+			locks.unlock(device, true);
 		}
 	}
 
 	private void setLabel(String device, String field, String value) throws AdapterException {
-		lock.lock();
+		locks.lock(device, true);
 		try {
 			adapter.setLabel(device, field, value);
+			invalidate();
 		} finally {
-			lock.unlock();
+			locks.unlock(device, true);
 		}
 	}
 
 	private void setProperty(String device, String name, String value) throws AdapterException {
-		lock.lock();
+		locks.lock(device, true);
 		try {
 			adapter.setProperty(device, name, value);
+			invalidate();
 		} finally {
-			lock.unlock();
+			locks.unlock(device, true);
 		}
 	}
 
 	private void setProperty(String device, String field, String name, String value) throws AdapterException {
-		lock.lock();
+		locks.lock(device, true);
 		try {
 			adapter.setProperty(device, field, name, value);
+			invalidate();
 		} finally {
-			lock.unlock();
+			locks.unlock(device, true);
 		}
 	}
 
-	private Object getValue(String device, String field) throws AdapterException {
-		lock.lock();
+	private Object read(String device, String field) throws AdapterException {
+		locks.lock(device, true);
 		try {
 			return adapter.getValue(device, field);
 		} finally {
-			lock.unlock();
+			locks.unlock(device, true);
+		}
+	}
+
+	/**
+	 * Gets the default max age of the field from the field property
+	 * {@link #MAX_AGE}. If the inventory fails the max age is 0 and the
+	 * property is read again on the next call.
+	 */
+	private long getMaxAge(String device, String field) {
+		FieldRef key = new FieldRef(device, field);
+		Long maxAge = maxAges.get(key);
+		if (maxAge == null) {
+			maxAge = Long.valueOf(0);
+			Map<String, Device> devices;
+			try {
+				devices = getDevices();
+			} catch (AdapterException | RuntimeException e) {
+				log(Level.WARNING, "Failed to get max age of device ''{0}'' field ''{1}''", e, device, field);
+				return 0;
+			}
+			Device d = devices != null ? devices.get(device) : null;
+			if (d != null && d.getFields() != null) {
+				Field f = d.getFields().get(field);
+				if (f != null && f.getProperties() != null && f.getProperties().get(MAX_AGE) != null) {
+					try {
+						maxAge = Long.valueOf(f.getProperties().get(MAX_AGE));
+					} catch (NumberFormatException e) {
+						log(Level.FINE, "Invalid max age of device ''{0}'' field ''{1}''", e, device, field);
+					}
+				}
+			}
+			maxAges.put(key, maxAge);
+		}
+		return maxAge.longValue();
+	}
+
+	/**
+	 * @return The number of writes of the field, which must be passed to
+	 *         {@link #sample(FieldRef, Object, long)} after the read
+	 */
+	private long writes(FieldRef key) {
+		return handles.register(key.getDevice(), key.getField()).getWrites();
+	}
+
+	/**
+	 * Sets the last known value of the field, unless the field has been
+	 * written since the read started
+	 */
+	private void sample(FieldRef key, Object value, long writes) {
+		handles.register(key.getDevice(), key.getField()).sample(value, writes);
+	}
+
+	/**
+	 * Removes the last known value of the field
+	 */
+	private void invalidate(String device, String field) {
+		FieldHandles.Slot slot = handles.get(device, field);
+		if (slot != null)
+			slot.invalidate();
+	}
+
+	/**
+	 * @return The slot of the field if its last known value is not older than
+	 *         max age or pushed by the adapter, otherwise null
+	 */
+	private FieldHandles.Slot cached(FieldRef key, long maxAge) {
+		FieldHandles.Slot slot = handles.get(key.getDevice(), key.getField());
+		return slot != null && slot.isSampled() && (slot.isValid(maxAge) || isPushed(key)) ? slot : null;
+	}
+
+	/**
+	 * @return True if the adapter pushes each change of the field
+	 */
+	private boolean isPushed(FieldRef field) {
+		return capabilities.contains(Capability.PUSH) && subscriptions.containsKey(field);
+	}
+
+	private Object getValue(String device, String field) throws AdapterException {
+		return getValue(device, field, getMaxAge(device, field));
+	}
+
+	/**
+	 * Registers the read of a field, unless a read started after the last
+	 * write of the field is pending. Reads started before a write may return
+	 * the old value, so they are replaced instead of joined.
+	 * 
+	 * @return The pending read to join or null if the flight has been
+	 *         registered
+	 */
+	private Flight join(FieldRef key, Flight flight) {
+		for (;;) {
+			Flight current = flights.putIfAbsent(key, flight);
+			if (current == null)
+				return null;
+			if (current.writes == flight.writes)
+				return current;
+			if (flights.replace(key, current, flight))
+				return null;
+		}
+	}
+
+	/**
+	 * Gets the last known value if it is not older than max age, otherwise
+	 * reads the value from the adapter. Concurrent reads of the same field
+	 * are merged into one adapter read, all callers receive its result.
+	 */
+	private Object getValue(String device, String field, long maxAge) throws AdapterException {
+		FieldRef key = new FieldRef(device, field);
+		FieldHandles.Slot slot = cached(key, maxAge);
+		if (slot != null)
+			return slot.getValue();
+		Flight flight = new Flight(writes(key));
+		Flight current = join(key, flight);
+		if (current == null) {
+			try {
+				Object value = read(device, field);
+				sample(key, value, flight.writes);
+				flight.complete(value);
+				return value;
+			} catch (Throwable e) {
+				flight.completeExceptionally(e);
+				throw e;
+			} finally {
+				flights.remove(key, flight);
+			}
+		}
+		try {
+			return current.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AdapterException("Interrupted while reading device '" + device + "' field '" + field + "'", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof AdapterException)
+				throw new AdapterException(e.getCause().getMessage(), e.getCause());
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new AdapterException(e.getCause().getMessage(), e.getCause());
 		}
 	}
 
 	private void setValue(String device, String field, Object value) throws AdapterException {
-		lock.lock();
+		locks.lock(device, true);
 		try {
+			invalidate(device, field);
 			adapter.setValue(device, field, value);
 		} finally {
-			lock.unlock();
+			locks.unlock(device, true);
 		}
 	}
 
-	private Key subscribe(String device, String field, AdapterListener listener) throws AdapterException {
-		lock.lock();
+	private void subscribe(String device, String field, SubscriptionOptions options) throws AdapterException {
+		locks.lock(device, true);
 		try {
-			Key key = new Key(device, field);
-			List<AdapterListener> listeners = this.listeners.get(key);
-			if (listeners == null) {
-				this.listeners.put(key, listeners = new CopyOnWriteArrayList<>());
+			if (options != null && capabilities.contains(Capability.OPTIONS))
+				adapter.subscribe(device, field, options);
+			else
 				adapter.subscribe(device, field);
+		} finally {
+			locks.unlock(device, true);
+		}
+	}
+
+	private void unsubscribe(String device, String field) throws AdapterException {
+		locks.lock(device, true);
+		try {
+			adapter.unsubscribe(device, field);
+		} finally {
+			locks.unlock(device, true);
+		}
+	}
+
+	/**
+	 * Merges the options of all subscribers of a field. The shortest
+	 * sampling interval, the smallest deadband and the largest queue size
+	 * win. A subscriber without options disables the sampling interval and
+	 * the deadband, a sampling interval of 0 for the adapter default
+	 * disables the sampling interval.
+	 * 
+	 * @return The merged options or null if no subscriber has options
+	 */
+	static SubscriptionOptions merge(List<SubscriptionOptions> options) {
+		SubscriptionOptions merged = null;
+		boolean plain = false;
+		for (SubscriptionOptions o : options) {
+			if (o == null) {
+				plain = true;
+				continue;
+			}
+			if (merged == null) {
+				merged = new SubscriptionOptions();
+				merged.setSamplingInterval(o.getSamplingInterval());
+				merged.setDeadband(o.getDeadband());
+				merged.setPercentDeadband(o.isPercentDeadband());
+				merged.setQueueSize(o.getQueueSize());
+				continue;
 			}
-			listeners.add(listener);
+			if (o.getSamplingInterval() <= 0 || merged.getSamplingInterval() <= 0)
+				merged.setSamplingInterval(0);
+			else
+				merged.setSamplingInterval(Math.min(merged.getSamplingInterval(), o.getSamplingInterval()));
+			if (o.isPercentDeadband() != merged.isPercentDeadband())
+				// absolute and percent deadbands are not comparable
+				merged.setDeadband(0);
+			else
+				merged.setDeadband(Math.min(merged.getDeadband(), o.getDeadband()));
+			merged.setQueueSize(Math.max(merged.getQueueSize(), o.getQueueSize()));
+		}
+		if (merged != null && plain) {
+			merged.setSamplingInterval(0);
+			merged.setDeadband(0);
+		}
+		return merged;
+	}
+
+	private static boolean equals(SubscriptionOptions o1, SubscriptionOptions o2) {
+		if (o1 == null || o2 == null)
+			return o1 == o2;
+		return o1.getSamplingInterval() == o2.getSamplingInterval() && o1.getDeadband() == o2.getDeadband() && o1.isPercentDeadband() == o2.isPercentDeadband()
+				&& o1.getQueueSize() == o2.getQueueSize();
+	}
+
+	private void acquire(FieldRef key, SubscriptionOptions options) throws AdapterException {
+		acquire(key, options, true);
+	}
+
+	/**
+	 * Subscribes the adapter to the field on the first subscriber and passes
+	 * changed merged options to adapters with the OPTIONS capability. The
+	 * caller must hold the registry lock of the device.
+	 * 
+	 * @param subscribe
+	 *            False if the adapter has already been subscribed to a new
+	 *            field
+	 */
+	private void acquire(FieldRef key, SubscriptionOptions options, boolean subscribe) throws AdapterException {
+		List<SubscriptionOptions> current = subscriptions.get(key);
+		List<SubscriptionOptions> next = new ArrayList<>();
+		if (current != null)
+			next.addAll(current);
+		next.add(options);
+		if (current == null) {
+			if (subscribe)
+				subscribe(key.getDevice(), key.getField(), merge(next));
+			// values read before are not pushed
+			invalidate(key.getDevice(), key.getField());
+		} else if (capabilities.contains(Capability.OPTIONS)) {
+			SubscriptionOptions merged = merge(next);
+			if (!equals(merge(current), merged))
+				subscribe(key.getDevice(), key.getField(), merged);
+		}
+		subscriptions.put(key, next);
+	}
+
+	private void release(FieldRef key, SubscriptionOptions options) throws AdapterException {
+		release(key, options, true);
+	}
+
+	/**
+	 * Unsubscribes the adapter from the field on the last subscriber,
+	 * otherwise passes changed merged options to adapters with the OPTIONS
+	 * capability. The caller must hold the registry lock of the device.
+	 * 
+	 * @param unsubscribe
+	 *            False if the caller unsubscribes the adapter from the field
+	 * @return True if the last subscriber has been removed
+	 */
+	private boolean release(FieldRef key, SubscriptionOptions options, boolean unsubscribe) throws AdapterException {
+		List<SubscriptionOptions> current = subscriptions.get(key);
+		if (current == null)
+			return false;
+		List<SubscriptionOptions> next = new ArrayList<>(current);
+		for (int i = 0; i < next.size(); i++) {
+			if (next.get(i) == options) {
+				next.remove(i);
+				break;
+			}
+		}
+		if (next.isEmpty()) {
+			subscriptions.remove(key);
+			if (unsubscribe)
+				unsubscribe(key.getDevice(), key.getField());
+			return true;
+		}
+		subscriptions.put(key, next);
+		if (capabilities.contains(Capability.OPTIONS)) {
+			SubscriptionOptions merged = merge(next);
+			if (!equals(merge(current), merged))
+				subscribe(key.getDevice(), key.getField(), merged);
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the listener to the listeners of the field. The caller must hold
+	 * the registry lock of the device.
+	 */
+	private ListenerList.Node<AdapterListener> register(FieldRef key, AdapterListener listener) {
+		FieldHandles.Slot slot = handles.register(key.getDevice(), key.getField());
+		ListenerList<AdapterListener> listeners = slot.listeners;
+		if (listeners == null)
+			slot.listeners = listeners = new ListenerList<>();
+		return listeners.add(listener);
+	}
+
+	/**
+	 * Removes the listener from the listeners of the field. The caller must
+	 * hold the registry lock of the device.
+	 * 
+	 * @return True if the listener has been removed
+	 */
+	private boolean unregister(FieldRef key, ListenerList.Node<AdapterListener> node) {
+		FieldHandles.Slot slot = handles.get(key.getDevice(), key.getField());
+		ListenerList<AdapterListener> listeners = slot != null ? slot.listeners : null;
+		if (listeners != null && listeners.remove(node)) {
+			if (listeners.isEmpty())
+				slot.listeners = null;
+			return true;
+		}
+		return false;
+	}
+
+	private FieldRef subscribe(String device, String field, Subscription subscription) throws AdapterException {
+		registry.lock(device, true);
+		try {
+			FieldRef key = new FieldRef(device, field);
+			acquire(key, subscription.options);
+			subscription.node = register(key, subscription.listener);
 			return key;
 		} finally {
-			lock.unlock();
+			registry.unlock(device, true);
 		}
 	}
 
-	private Key unsubscribe(String device, String field, AdapterListener listener) throws AdapterException {
-		lock.lock();
+	private FieldRef unsubscribe(String device, String field, Subscription subscription) throws AdapterException {
+		registry.lock(device, true);
 		try {
-			Key key = new Key(device, field);
-			List<AdapterListener> listeners = this.listeners.get(key);
-			if (listeners != null) {
-				if (listeners.remove(listener)) {
-					if (listeners.isEmpty()) {
-						this.listeners.remove(key);
-						adapter.unsubscribe(device, field);
+			FieldRef key = new FieldRef(device, field);
+			if (unregister(key, subscription.node))
+				release(key, subscription.options);
+			return key;
+		} finally {
+			registry.unlock(device, true);
+		}
+	}
 
+	/**
+	 * Subscribes the listener to all fields without options. The adapter is
+	 * subscribed to the new fields in one call, if it fails no field is
+	 * subscribed.
+	 * 
+	 * @return The subscriptions of the fields
+	 */
+	private Map<FieldRef, Subscription> subscribe(Collection<FieldRef> fields, AdapterListener listener) throws AdapterException {
+		Set<FieldRef> keys = new LinkedHashSet<>(fields);
+		Set<String> devices = devices(keys);
+		registry.lock(devices);
+		try {
+			List<FieldRef> added = new ArrayList<>();
+			for (FieldRef key : keys)
+				if (!subscriptions.containsKey(key))
+					added.add(key);
+			if (!added.isEmpty()) {
+				Set<String> d = devices(added);
+				locks.lock(d);
+				try {
+					adapter.subscribe(added);
+				} finally {
+					locks.unlock(d);
+				}
+			}
+			Map<FieldRef, Subscription> subscriptions = new LinkedHashMap<>();
+			try {
+				for (FieldRef key : keys) {
+					acquire(key, null, false);
+					Subscription subscription = new Subscription(listener, null);
+					subscription.node = register(key, listener);
+					subscriptions.put(key, subscription);
+				}
+			} catch (AdapterException | RuntimeException e) {
+				// roll back the fields handled so far and the new fields
+				for (Map.Entry<FieldRef, Subscription> entry : subscriptions.entrySet()) {
+					unregister(entry.getKey(), entry.getValue().node);
+					try {
+						release(entry.getKey(), null, false);
+					} catch (AdapterException | RuntimeException ex) {
+						e.addSuppressed(ex);
 					}
 				}
+				if (!added.isEmpty()) {
+					Set<String> d = devices(added);
+					locks.lock(d);
+					try {
+						adapter.unsubscribe(added);
+					} catch (AdapterException | RuntimeException ex) {
+						e.addSuppressed(ex);
+					} finally {
+						locks.unlock(d);
+					}
+				}
+				throw e;
 			}
-			return key;
+			return subscriptions;
 		} finally {
-			lock.unlock();
+			registry.unlock(devices);
 		}
 	}
 
-	private String add(Device device) throws AdapterException {
-		lock.lock();
+	/**
+	 * Removes the subscriptions. The adapter is unsubscribed from all fields
+	 * without subscribers in one call.
+	 */
+	private void unsubscribe(Map<FieldRef, Subscription> subscriptions) throws AdapterException {
+		Set<String> devices = devices(subscriptions.keySet());
+		registry.lock(devices);
 		try {
-			return adapter.add(device);
+			List<FieldRef> removed = new ArrayList<>();
+			for (Map.Entry<FieldRef, Subscription> entry : subscriptions.entrySet()) {
+				FieldRef key = entry.getKey();
+				if (unregister(key, entry.getValue().node) && release(key, entry.getValue().options, false))
+					removed.add(key);
+			}
+			if (!removed.isEmpty()) {
+				Set<String> d = devices(removed);
+				locks.lock(d);
+				try {
+					adapter.unsubscribe(removed);
+				} finally {
+					locks.unlock(d);
+				}
+			}
 		} finally {
-			lock.unlock();
+			registry.unlock(devices);
 		}
 	}
 
-	private void remove(String device) throws AdapterException {
-		lock.lock();
+	/**
+	 * Subscribes the adapter to all fields of the inventory matching the
+	 * pattern which are not yet part of the expansion. The new fields are
+	 * subscribed in one call where the adapter needs no options, if a field
+	 * fails no new field is subscribed.
+	 */
+	private void expand(Expansion expansion) throws AdapterException {
+		Map<String, Device> devices = getDevices();
+		if (devices == null)
+			return;
+		Set<FieldRef> keys = new LinkedHashSet<>();
+		for (Map.Entry<String, Device> device : devices.entrySet()) {
+			if (!PatternIndex.matches(expansion.pattern.getDevice(), device.getKey()) || device.getValue() == null || device.getValue().getFields() == null)
+				continue;
+			for (String field : device.getValue().getFields().keySet()) {
+				if (!PatternIndex.matches(expansion.pattern.getField(), field))
+					continue;
+				FieldRef key = new FieldRef(device.getKey(), field);
+				if (!expansion.fields.contains(key))
+					keys.add(key);
+			}
+		}
+		if (keys.isEmpty())
+			return;
+		// the bulk subscribe of the adapter passes no options
+		boolean bulk = expansion.options == null || !capabilities.contains(Capability.OPTIONS);
+		Set<String> ids = devices(keys);
+		registry.lock(ids);
 		try {
-			adapter.remove(device);
+			List<FieldRef> added = new ArrayList<>();
+			if (bulk) {
+				for (FieldRef key : keys)
+					if (!subscriptions.containsKey(key))
+						added.add(key);
+				if (!added.isEmpty()) {
+					Set<String> d = devices(added);
+					locks.lock(d);
+					try {
+						adapter.subscribe(added);
+					} finally {
+						locks.unlock(d);
+					}
+				}
+			}
+			List<FieldRef> acquired = new ArrayList<>();
+			try {
+				for (FieldRef key : keys) {
+					acquire(key, expansion.options, !bulk);
+					acquired.add(key);
+				}
+			} catch (AdapterException | RuntimeException e) {
+				// roll back the fields handled so far and the new fields
+				for (FieldRef key : acquired) {
+					try {
+						release(key, expansion.options, !bulk);
+					} catch (AdapterException | RuntimeException ex) {
+						e.addSuppressed(ex);
+					}
+				}
+				if (!added.isEmpty()) {
+					Set<String> d = devices(added);
+					locks.lock(d);
+					try {
+						adapter.unsubscribe(added);
+					} catch (AdapterException | RuntimeException ex) {
+						e.addSuppressed(ex);
+					} finally {
+						locks.unlock(d);
+					}
+				}
+				throw e;
+			}
+			expansion.fields.addAll(keys);
 		} finally {
-			lock.unlock();
+			registry.unlock(ids);
+		}
+	}
+
+	/**
+	 * Removes the fields of the removed device from the expansions without
+	 * unsubscribing the adapter, so the patterns expand to the device again
+	 * if it is added again
+	 */
+	private void prune(String device) {
+		synchronized (expansions) {
+			for (Expansion expansion : expansions) {
+				for (Iterator<FieldRef> i = expansion.fields.iterator(); i.hasNext();) {
+					FieldRef key = i.next();
+					if (!Objects.equals(key.getDevice(), device))
+						continue;
+					i.remove();
+					registry.lock(device, true);
+					try {
+						release(key, expansion.options, false);
+					} catch (AdapterException e) {
+						log(Level.FINE, "Failed to unsubscribe from device ''{0}'' field ''{1}''", e, key.getDevice(), key.getField());
+					} finally {
+						registry.unlock(device, true);
+					}
+				}
+			}
 		}
 	}
 
-	private void add(AdapterListener capsule) {
-		if (capsules.add(capsule) && capsules.size() == 1) {
+	/**
+	 * Unsubscribes the adapter from all fields of the expansion
+	 */
+	private void shrink(Expansion expansion) throws AdapterException {
+		AdapterException exception = null;
+		for (FieldRef key : expansion.fields) {
+			registry.lock(key.getDevice(), true);
 			try {
-				open();
+				release(key, expansion.options);
 			} catch (AdapterException e) {
-				log(Level.FINE, "Failed to open adapter ''{0}''", e, adapter.getClass().getName());
+				exception = e;
+			} finally {
+				registry.unlock(key.getDevice(), true);
+			}
+		}
+		expansion.fields.clear();
+		if (exception != null)
+			throw exception;
+	}
+
+	/**
+	 * Expands the patterns to the fields of devices added or discovered since
+	 */
+	private void expand() {
+		synchronized (expansions) {
+			for (Expansion expansion : expansions) {
+				try {
+					expand(expansion);
+				} catch (AdapterException e) {
+					log(Level.FINE, "Failed to expand device ''{0}'' field ''{1}''", e, expansion.pattern.getDevice(), expansion.pattern.getField());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Expands the patterns on the async pool. Called when the inventory
+	 * changed, which may be caused by devices the adapter discovered itself.
+	 * The caller may hold device locks or be an adapter callback, so the
+	 * adapter is not called here. Requests are coalesced while one is
+	 * pending.
+	 */
+	private void expandLater() {
+		if (!expanding.compareAndSet(false, true))
+			return;
+		try {
+			async.execute(new Runnable() {
+				@Override
+				public void run() {
+					// changes from now on request a further expansion
+					expanding.set(false);
+					expand();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// disposed
+			expanding.set(false);
+		}
+	}
+
+	private FieldRef subscribePattern(String device, String field, AdapterListener listener, SubscriptionOptions options, AdapterListener capsule) throws AdapterException {
+		Expansion expansion = new Expansion(new FieldRef(device, field), listener, options);
+		synchronized (expansions) {
+			// rolls back on failure
+			expand(expansion);
+			expansions.add(expansion);
+			patterns.add(device, field, listener, capsule);
+		}
+		return expansion.pattern;
+	}
+
+	private FieldRef unsubscribePattern(String device, String field, AdapterListener listener, AdapterListener capsule) throws AdapterException {
+		FieldRef pattern = new FieldRef(device, field);
+		synchronized (expansions) {
+			for (Expansion expansion : expansions) {
+				if (expansion.pattern.equals(pattern) && expansion.listener == listener) {
+					expansions.remove(expansion);
+					patterns.remove(device, field, listener, capsule);
+					shrink(expansion);
+					break;
+				}
 			}
 		}
+		return pattern;
 	}
 
-	private void remove(AdapterListener capsule) {
-		if (capsules.remove(capsule) && capsules.size() == 0) {
+	/**
+	 * Routes the usability changes of the device to the capsule
+	 */
+	private void watch(String device, AdapterListener capsule) {
+		if (device == null)
+			return;
+		registry.lock(device, true);
+		try {
+			Map<AdapterListener, Integer> capsules = watchers.get(device);
+			if (capsules == null)
+				watchers.put(device, capsules = new ConcurrentHashMap<>());
+			Integer count = capsules.get(capsule);
+			capsules.put(capsule, count == null ? 1 : count + 1);
+		} finally {
+			registry.unlock(device, true);
+		}
+	}
+
+	private void unwatch(String device, AdapterListener capsule) {
+		if (device == null)
+			return;
+		registry.lock(device, true);
+		try {
+			Map<AdapterListener, Integer> capsules = watchers.get(device);
+			if (capsules != null) {
+				Integer count = capsules.get(capsule);
+				if (count != null && count > 1) {
+					capsules.put(capsule, count - 1);
+				} else {
+					capsules.remove(capsule);
+					if (capsules.isEmpty())
+						watchers.remove(device);
+				}
+			}
+		} finally {
+			registry.unlock(device, true);
+		}
+	}
+
+	private static Set<String> devices(Collection<FieldRef> fields) {
+		Set<String> devices = new HashSet<>();
+		for (FieldRef field : fields)
+			devices.add(field.getDevice());
+		return devices;
+	}
+
+	/**
+	 * Gets the values of the fields. Last known values are used if they are
+	 * not older than the default max age of the field, the remaining fields
+	 * are read from batch adapters at once. Failed fields are reported by a
+	 * {@link PartialValuesException} with the values of the other fields.
+	 */
+	private Map<FieldRef, Object> getValues(Collection<FieldRef> fields) throws AdapterException {
+		Map<FieldRef, Object> values = new LinkedHashMap<>();
+		Map<FieldRef, AdapterException> failures = new LinkedHashMap<>();
+		List<FieldRef> reads = new ArrayList<>();
+		for (FieldRef field : fields) {
+			FieldHandles.Slot slot = handles.get(field.getDevice(), field.getField());
+			if (slot != null && slot.isSampled() && (isPushed(field) || slot.isValid(getMaxAge(field.getDevice(), field.getField()))))
+				values.put(field, slot.getValue());
+			else
+				reads.add(field);
+		}
+		if (reads.size() > 1 && capabilities.contains(Capability.BATCH)) {
+			Map<FieldRef, Object> read;
+			long[] writes = new long[reads.size()];
+			for (int i = 0; i < writes.length; i++)
+				writes[i] = writes(reads.get(i));
+			Set<String> devices = devices(reads);
+			locks.lock(devices);
 			try {
-				close();
-			} catch (AdapterException e) {
-				log(Level.FINE, "Failed to close adapter ''{0}''", e, adapter.getClass().getName());
+				read = adapter.getValues(reads);
+			} catch (PartialValuesException e) {
+				read = e.getValues();
+				failures.putAll(e.getFailures());
+			} finally {
+				locks.unlock(devices);
 			}
+			for (int i = 0; i < writes.length; i++) {
+				FieldRef field = reads.get(i);
+				if (failures.containsKey(field))
+					continue;
+				Object value = read.get(field);
+				sample(field, value, writes[i]);
+				values.put(field, value);
+			}
+		} else {
+			// single reads only lock one device at a time
+			for (FieldRef field : reads) {
+				try {
+					values.put(field, getValue(field.getDevice(), field.getField(), 0));
+				} catch (AdapterException e) {
+					failures.put(field, e);
+				}
+			}
+		}
+		// keep the requested order
+		Map<FieldRef, Object> result = new LinkedHashMap<>();
+		for (FieldRef field : fields)
+			if (!failures.containsKey(field))
+				result.put(field, values.get(field));
+		if (!failures.isEmpty())
+			throw new PartialValuesException(result, failures);
+		return result;
+	}
+
+	private void setValues(Map<FieldRef, Object> values) throws AdapterException {
+		if (!capabilities.contains(Capability.BATCH)) {
+			for (Map.Entry<FieldRef, Object> value : values.entrySet())
+				setValue(value.getKey().getDevice(), value.getKey().getField(), value.getValue());
+			return;
+		}
+		Set<String> devices = devices(values.keySet());
+		locks.lock(devices);
+		try {
+			for (FieldRef field : values.keySet())
+				invalidate(field.getDevice(), field.getField());
+			adapter.setValues(values);
+		} finally {
+			locks.unlock(devices);
+		}
+	}
+
+	/**
+	 * Runs the call on the async pool
+	 */
+	private <T> CompletableFuture<T> supply(final Callable<T> call) {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			async.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						future.complete(call.call());
+					} catch (Throwable e) {
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new AdapterException("Adapter manager has been disposed", e));
 		}
+		return future;
+	}
+
+	private CompletableFuture<Object> getValueAsync(final String device, final String field) {
+		if (capabilities.contains(Capability.ASYNC)) {
+			Long maxAge = maxAges.get(new FieldRef(device, field));
+			if (maxAge != null)
+				return getValueAsync(device, field, maxAge.longValue());
+			// resolving the max age may read the inventory, which blocks
+			return supply(new Callable<Long>() {
+				@Override
+				public Long call() {
+					return Long.valueOf(getMaxAge(device, field));
+				}
+			}).thenCompose(new Function<Long, CompletionStage<Object>>() {
+				@Override
+				public CompletionStage<Object> apply(Long maxAge) {
+					return getValueAsync(device, field, maxAge.longValue());
+				}
+			});
+		}
+		return supply(new Callable<Object>() {
+			@Override
+			public Object call() throws AdapterException {
+				return getValue(device, field);
+			}
+		});
+	}
+
+	/**
+	 * Gets the value asynchronously. Asynchronous adapters are called
+	 * directly, all other adapters are called on the async pool.
+	 */
+	private CompletableFuture<Object> getValueAsync(final String device, final String field, final long maxAge) {
+		if (capabilities.contains(Capability.ASYNC)) {
+			final FieldRef key = new FieldRef(device, field);
+			FieldHandles.Slot slot = cached(key, maxAge);
+			if (slot != null)
+				return CompletableFuture.completedFuture(slot.getValue());
+			final long writes = writes(key);
+			final Flight flight = new Flight(writes);
+			Flight current = join(key, flight);
+			if (current != null)
+				return current;
+			try {
+				((AsyncAdapter) adapter).getValueAsync(device, field).whenComplete(new BiConsumer<Object, Throwable>() {
+					@Override
+					public void accept(Object value, Throwable e) {
+						if (e == null) {
+							sample(key, value, writes);
+							flight.complete(value);
+						} else {
+							flight.completeExceptionally(e);
+						}
+						flights.remove(key, flight);
+					}
+				});
+			} catch (RuntimeException e) {
+				flight.completeExceptionally(e);
+				flights.remove(key, flight);
+			}
+			return flight;
+		}
+		return supply(new Callable<Object>() {
+			@Override
+			public Object call() throws AdapterException {
+				return getValue(device, field, maxAge);
+			}
+		});
+	}
+
+	private CompletableFuture<Void> setValueAsync(final String device, final String field, final Object value) {
+		if (capabilities.contains(Capability.ASYNC)) {
+			invalidate(device, field);
+			return ((AsyncAdapter) adapter).setValueAsync(device, field, value).whenComplete(new BiConsumer<Void, Throwable>() {
+				@Override
+				public void accept(Void result, Throwable e) {
+					// drops values of reads started during the write
+					invalidate(device, field);
+				}
+			});
+		}
+		return supply(new Callable<Void>() {
+			@Override
+			public Void call() throws AdapterException {
+				setValue(device, field, value);
+				return null;
+			}
+		});
+	}
+
+	private CompletableFuture<Map<FieldRef, Object>> getValuesAsync(final Collection<FieldRef> fields) {
+		if (capabilities.contains(Capability.ASYNC)) {
+			final Map<FieldRef, Long> writes = new HashMap<>();
+			for (FieldRef field : fields)
+				writes.put(field, Long.valueOf(writes(field)));
+			return ((AsyncAdapter) adapter).getValuesAsync(fields).thenApply(new Function<Map<FieldRef, Object>, Map<FieldRef, Object>>() {
+				@Override
+				public Map<FieldRef, Object> apply(Map<FieldRef, Object> values) {
+					for (Map.Entry<FieldRef, Object> value : values.entrySet()) {
+						Long w = writes.get(value.getKey());
+						if (w != null)
+							sample(value.getKey(), value.getValue(), w.longValue());
+					}
+					return values;
+				}
+			});
+		}
+		return supply(new Callable<Map<FieldRef, Object>>() {
+			@Override
+			public Map<FieldRef, Object> call() throws AdapterException {
+				return getValues(fields);
+			}
+		});
+	}
+
+	private CompletableFuture<Void> setValuesAsync(final Map<FieldRef, Object> values) {
+		if (capabilities.contains(Capability.ASYNC)) {
+			for (FieldRef field : values.keySet())
+				invalidate(field.getDevice(), field.getField());
+			return ((AsyncAdapter) adapter).setValuesAsync(values).whenComplete(new BiConsumer<Void, Throwable>() {
+				@Override
+				public void accept(Void result, Throwable e) {
+					// drops values of reads started during the write
+					for (FieldRef field : values.keySet())
+						invalidate(field.getDevice(), field.getField());
+				}
+			});
+		}
+		return supply(new Callable<Void>() {
+			@Override
+			public Void call() throws AdapterException {
+				setValues(values);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Removes the cached values of the device
+	 */
+	private void invalidate(String device) {
+		for (FieldHandles.Slot slot : handles.getSlots(device))
+			slot.invalidate();
+	}
+
+	/**
+	 * Drops the field slots of the removed device. Slots with listeners are
+	 * kept for the subscriptions.
+	 */
+	private void dropSlots(String device) {
+		registry.lock(device, true);
+		try {
+			handles.remove(device);
+		} finally {
+			registry.unlock(device, true);
+		}
+	}
+
+	private String add(Device device) throws AdapterException {
+		String id;
+		locks.lock(true);
+		try {
+			id = adapter.add(device);
+			invalidate();
+		} finally {
+			locks.unlock(true);
+		}
+		expand();
+		return id;
+	}
+
+	private void remove(String device) throws AdapterException {
+		locks.lock(true);
+		try {
+			adapter.remove(device);
+			invalidate();
+			invalidate(device);
+		} finally {
+			locks.unlock(true);
+		}
+		// the registry lock is taken before the device locks
+		prune(device);
+		dropSlots(device);
+	}
+
+	private ListenerList.Node<AdapterListener> add(AdapterListener capsule) {
+		synchronized (lifecycle) {
+			ListenerList.Node<AdapterListener> node = capsules.add(capsule);
+			keepOpen();
+			return node;
+		}
+	}
+
+	private void remove(ListenerList.Node<AdapterListener> capsule) {
+		synchronized (lifecycle) {
+			if (capsules.remove(capsule) && capsules.isEmpty())
+				linger();
+		}
+	}
+
+	/**
+	 * @return The number of times the adapter has been opened
+	 */
+	public long getOpenCount() {
+		return opens.sum();
+	}
+
+	/**
+	 * @return The number of times the adapter has been closed
+	 */
+	public long getCloseCount() {
+		return closes.sum();
+	}
+
+	/**
+	 * @return The number of events dropped because a dispatch queue was full
+	 */
+	public long getDroppedEvents() {
+		return dispatcher.getDropped();
+	}
+
+	/**
+	 * @return The number of queued values replaced by a newer value of the
+	 *         same field
+	 */
+	public long getCoalescedEvents() {
+		return dispatcher.getCoalesced();
+	}
+
+	/**
+	 * @return The delivery metrics of all open handlers
+	 */
+	public List<MailboxMetrics> getMailboxMetrics() {
+		List<MailboxMetrics> metrics = new ArrayList<>();
+		for (ListenerList.Node<Mailbox> node = mailboxes.first(); node != null; node = node.next())
+			metrics.add(node.get().getMetrics());
+		return metrics;
+	}
+
+	/**
+	 * Stops the event dispatching. The manager must not be used afterwards.
+	 */
+	public void dispose() {
+		synchronized (lifecycle) {
+			// cancels a pending linger
+			lingers++;
+			closeUnused();
+		}
+		dispatcher.shutdown();
+		delivery.shutdownNow();
+		async.shutdownNow();
+		scheduler.shutdownNow();
+		if (fanout != null)
+			fanout.shutdownNow();
+	}
+
+	/**
+	 * Creates an asynchronous handler for the value access. The handler keeps
+	 * the adapter open until it is closed.
+	 * 
+	 * @return The asynchronous handler
+	 */
+	public AsyncAdapterHandler createAsyncInstance() {
+		final AdapterHandler handler = createInstance();
+		return new AsyncAdapterHandler() {
+
+			@Override
+			public CompletableFuture<Object> getValue(String device, String field) {
+				return AdapterManager.this.getValueAsync(device, field);
+			}
+
+			@Override
+			public CompletableFuture<Object> getValue(String device, String field, long maxAge) {
+				return AdapterManager.this.getValueAsync(device, field, maxAge);
+			}
+
+			@Override
+			public CompletableFuture<Void> setValue(String device, String field, Object value) {
+				return AdapterManager.this.setValueAsync(device, field, value);
+			}
+
+			@Override
+			public CompletableFuture<Map<FieldRef, Object>> getValues(Collection<FieldRef> fields) {
+				return AdapterManager.this.getValuesAsync(fields);
+			}
+
+			@Override
+			public CompletableFuture<Void> setValues(Map<FieldRef, Object> values) {
+				return AdapterManager.this.setValuesAsync(values);
+			}
+
+			@Override
+			public void close() throws Exception {
+				handler.close();
+			}
+		};
 	}
 
 	public AdapterHandler createInstance() {
 		return new AdapterHandler() {
 
-			private List<Key> keys = new ArrayList<>();
+			private Map<FieldRef, Subscription> keys = new ConcurrentHashMap<>();
+			private Map<FieldRef, Subscription> wildcards = new ConcurrentHashMap<>();
 			private Lock lock = new ReentrantLock();
 			private AdapterListener listener;
 
-			private AdapterListener capsule = new AdapterListener() {
+			private AdapterListener receiver = new BatchAdapterListener() {
+				@Override
+				public void valuesChanged(Adapter source, List<FieldValueChangedEvent> events) {
+					lock.lock();
+					try {
+						if (listener instanceof BatchAdapterListener) {
+							((BatchAdapterListener) listener).valuesChanged(source, events);
+						} else if (listener != null) {
+							for (FieldValueChangedEvent event : events)
+								deliver(listener, source, event);
+						}
+					} finally {
+						lock.unlock();
+					}
+				}
+
 				@Override
 				public void valueChanged(Adapter source, FieldValueChangedEvent event) {
 					lock.lock();
 					try {
 						if (listener != null)
-							listener.valueChanged(source, event);
+							deliver(listener, source, event);
 					} finally {
 						lock.unlock();
 					}
@@ -310,8 +1628,49 @@ public class AdapterManager {
 				}
 			};
 
-			{
-				AdapterManager.this.add(capsule);
+			private Mailbox mailbox = new Mailbox(delivery, scheduler, receiver, Environment.MAILBOX_CAPACITY, Environment.MAILBOX_POLICY, Environment.MAILBOX_BATCH_SIZE,
+					Environment.MAILBOX_BATCH_LATENCY);
+
+			private AdapterListener capsule = new AdapterListener() {
+				@Override
+				public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+					mailbox.offer(source, event, false);
+				}
+
+				@Override
+				public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+					mailbox.offer(source, event, false);
+				}
+
+				@Override
+				public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+					mailbox.offer(source, event, false);
+				}
+			};
+
+			private AdapterListener conflating = new AdapterListener() {
+				@Override
+				public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+					mailbox.offer(source, event, true);
+				}
+
+				@Override
+				public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+					// usability changes are passed to the capsule
+				}
+
+				@Override
+				public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+					// usability changes are passed to the capsule
+				}
+			};
+
+			private ListenerList.Node<Mailbox> mailboxNode = mailboxes.add(mailbox);
+			private ListenerList.Node<AdapterListener> capsuleNode = AdapterManager.this.add(capsule);
+
+			@Override
+			public MailboxMetrics getMetrics() {
+				return mailbox.getMetrics();
 			}
 
 			@Override
@@ -319,6 +1678,7 @@ public class AdapterManager {
 				lock.lock();
 				try {
 					this.listener = listener;
+					mailbox.setBatch(listener instanceof BatchAdapterListener);
 				} finally {
 					lock.unlock();
 				}
@@ -354,14 +1714,68 @@ public class AdapterManager {
 				return AdapterManager.this.getValue(device, field);
 			}
 
+			@Override
+			public Object getValue(String device, String field, long maxAge) throws AdapterException {
+				return AdapterManager.this.getValue(device, field, maxAge);
+			}
+
 			@Override
 			public void setValue(String device, String field, Object value) throws AdapterException {
 				AdapterManager.this.setValue(device, field, value);
 			}
 
+			@Override
+			public Map<FieldRef, Object> getValues(Collection<FieldRef> fields) throws AdapterException {
+				return AdapterManager.this.getValues(fields);
+			}
+
+			@Override
+			public void setValues(Map<FieldRef, Object> values) throws AdapterException {
+				AdapterManager.this.setValues(values);
+			}
+
 			@Override
 			public void subscribe(String device, String field) throws AdapterException {
-				keys.add(AdapterManager.this.subscribe(device, field, capsule));
+				subscribe(device, field, new Subscription(capsule, null));
+			}
+
+			@Override
+			public void subscribe(String device, String field, SubscriptionOptions options) throws AdapterException {
+				subscribe(device, field, subscription(options));
+			}
+
+			/**
+			 * @return The subscription with a listener which applies the
+			 *         options before passing values to the mailbox
+			 */
+			private Subscription subscription(SubscriptionOptions options) {
+				if (options == null)
+					return new Subscription(capsule, null);
+				AdapterListener listener = options.isConflate() ? conflating : capsule;
+				if (options.getDeadband() > 0)
+					listener = new Deadband(listener, options.getDeadband(), options.isPercentDeadband());
+				long interval = options.getMinInterval();
+				// without push down the sampling interval limits the rate
+				if (!capabilities.contains(Capability.OPTIONS))
+					interval = Math.max(interval, options.getSamplingInterval());
+				if (interval > 0)
+					listener = new Throttle(listener, scheduler, interval, options.isKeepLatest());
+				return new Subscription(listener, options);
+			}
+
+			private void discard(Subscription subscription) {
+				if (subscription.listener instanceof Throttle)
+					((Throttle) subscription.listener).close();
+			}
+
+			private void subscribe(String device, String field, Subscription subscription) throws AdapterException {
+				Subscription current = keys.get(new FieldRef(device, field));
+				if (current == null || current.listener != subscription.listener || current.options != subscription.options) {
+					if (current != null)
+						unsubscribe(device, field);
+					keys.put(AdapterManager.this.subscribe(device, field, subscription), subscription);
+					watch(device, capsule);
+				}
 			}
 
 			@Override
@@ -376,20 +1790,135 @@ public class AdapterManager {
 
 			@Override
 			public void unsubscribe(String device, String field) throws AdapterException {
-				keys.remove(AdapterManager.this.unsubscribe(device, field, capsule));
+				Subscription subscription = keys.get(new FieldRef(device, field));
+				if (subscription != null) {
+					keys.remove(AdapterManager.this.unsubscribe(device, field, subscription));
+					unwatch(device, capsule);
+					discard(subscription);
+				}
+			}
+
+			@Override
+			public void subscribe(Collection<FieldRef> fields) throws AdapterException {
+				List<FieldRef> added = new ArrayList<>();
+				for (FieldRef key : fields) {
+					Subscription current = keys.get(key);
+					if (current != null && current.listener == capsule && current.options == null)
+						continue;
+					added.add(key);
+				}
+				if (added.isEmpty())
+					return;
+				// subscriptions with options are replaced after the new
+				// subscriptions succeeded, so they are kept on failure
+				for (Map.Entry<FieldRef, Subscription> entry : AdapterManager.this.subscribe(added, capsule).entrySet()) {
+					FieldRef key = entry.getKey();
+					Subscription current = keys.put(key, entry.getValue());
+					watch(key.getDevice(), capsule);
+					if (current != null) {
+						try {
+							AdapterManager.this.unsubscribe(key.getDevice(), key.getField(), current);
+						} catch (AdapterException e) {
+							log(Level.FINE, "Failed to replace subscription of device ''{0}'' field ''{1}''", e, key.getDevice(), key.getField());
+						} finally {
+							unwatch(key.getDevice(), capsule);
+							discard(current);
+						}
+					}
+				}
+			}
+
+			@Override
+			public void unsubscribe(Collection<FieldRef> fields) throws AdapterException {
+				Map<FieldRef, Subscription> removed = new LinkedHashMap<>();
+				for (FieldRef key : fields) {
+					Subscription subscription = keys.get(key);
+					if (subscription != null)
+						removed.put(key, subscription);
+				}
+				if (removed.isEmpty())
+					return;
+				try {
+					AdapterManager.this.unsubscribe(removed);
+				} finally {
+					for (Map.Entry<FieldRef, Subscription> entry : removed.entrySet()) {
+						keys.remove(entry.getKey());
+						unwatch(entry.getKey().getDevice(), capsule);
+						discard(entry.getValue());
+					}
+				}
+			}
+
+			@Override
+			public Set<FieldRef> getSubscriptions() {
+				return new HashSet<>(keys.keySet());
+			}
+
+			@Override
+			public void subscribePattern(String device, String field) throws AdapterException {
+				subscribePattern(device, field, (SubscriptionOptions) null);
+			}
+
+			@Override
+			public void subscribePattern(String device, String field, SubscriptionOptions options) throws AdapterException {
+				Subscription subscription = subscription(options);
+				Subscription current = wildcards.get(new FieldRef(device, field));
+				if (current == null || current.listener != subscription.listener || current.options != subscription.options) {
+					if (current != null)
+						unsubscribePattern(device, field);
+					wildcards.put(AdapterManager.this.subscribePattern(device, field, subscription.listener, subscription.options, capsule), subscription);
+				}
+			}
+
+			@Override
+			public void unsubscribePattern(String device, String field) throws AdapterException {
+				Subscription subscription = wildcards.get(new FieldRef(device, field));
+				if (subscription != null) {
+					wildcards.remove(AdapterManager.this.unsubscribePattern(device, field, subscription.listener, capsule));
+					discard(subscription);
+				}
+			}
+
+			@Override
+			public void setUsabilityBroadcast(boolean broadcast) throws AdapterException {
+				if (broadcast)
+					broadcasts.add(capsule);
+				else
+					broadcasts.remove(capsule);
 			}
 
 			@Override
 			public void close() throws Exception {
-				for (Key key : keys) {
+				// pending events are not delivered after close
+				mailbox.close();
+				for (Map.Entry<FieldRef, Subscription> entry : keys.entrySet()) {
+					FieldRef key = entry.getKey();
 					try {
-						AdapterManager.this.unsubscribe(key.device, key.field, listener);
+						AdapterManager.this.unsubscribe(key.getDevice(), key.getField(), entry.getValue());
 					} catch (AdapterException e) {
-						log(Level.FINE, "Failed to unsubscribe from device ''{0}'' field ''{1}''", e, key.device, key.field);
+						log(Level.FINE, "Failed to unsubscribe from device ''{0}'' field ''{1}''", e, key.getDevice(), key.getField());
+					} finally {
+						// the listener has been removed before the adapter
+						// failed, so the bookkeeping is always cleaned up
+						unwatch(key.getDevice(), capsule);
+						discard(entry.getValue());
 					}
 				}
 				keys.clear();
-				AdapterManager.this.remove(capsule);
+				for (Map.Entry<FieldRef, Subscription> entry : wildcards.entrySet()) {
+					FieldRef pattern = entry.getKey();
+					try {
+						AdapterManager.this.unsubscribePattern(pattern.getDevice(), pattern.getField(), entry.getValue().listener, capsule);
+					} catch (AdapterException e) {
+						log(Level.FINE, "Failed to unsubscribe from device ''{0}'' field ''{1}''", e, pattern.getDevice(), pattern.getField());
+					} finally {
+						discard(entry.getValue());
+					}
+				}
+				wildcards.clear();
+				broadcasts.remove(capsule);
+				AdapterManager.this.remove(capsuleNode);
+				mailboxes.remove(mailboxNode);
 			}
 
 			@Override
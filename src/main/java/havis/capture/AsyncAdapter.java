@@ -0,0 +1,74 @@
+package havis.capture;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * AsyncAdapter is implemented by adapters which access their devices
+ * asynchronously. The asynchronous methods are called directly without
+ * serialization, so they must be thread-safe.
+ * 
+ */
+public interface AsyncAdapter extends Adapter {
+
+    /**
+	 * Retrieves the current value of the field with id field of the device with id device
+     * from the corresponding physical sensor/actor.
+	 * 
+	 * @param device    The id of the device.
+     * @param field     The id of the field.
+	 * @return          The future of the requested value.
+	 */
+	CompletableFuture<Object> getValueAsync(String device, String field);
+
+    /**
+	 * Sets the current value of the field with id field of the device with id device
+     * on the corresponding physical sensor/actor.
+	 * 
+	 * @param device    The id of the device.
+     * @param field     The id of the field.
+     * @param value     The value to set.
+	 * @return          The future which completes when the value is set.
+	 */
+	CompletableFuture<Void> setValueAsync(String device, String field, Object value);
+
+    /**
+	 * Retrieves the current values of the fields. By default each field is read separately.
+	 * 
+	 * @param fields    The fields to read.
+	 * @return          The future of the requested values by field.
+	 */
+	default CompletableFuture<Map<FieldRef, Object>> getValuesAsync(Collection<FieldRef> fields) {
+		final Map<FieldRef, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+		for (FieldRef field : fields)
+			futures.put(field, getValueAsync(field.getDevice(), field.getField()));
+		return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).thenApply(
+				new Function<Void, Map<FieldRef, Object>>() {
+					@Override
+					public Map<FieldRef, Object> apply(Void result) {
+						Map<FieldRef, Object> values = new LinkedHashMap<>();
+						for (Map.Entry<FieldRef, CompletableFuture<Object>> future : futures.entrySet())
+							values.put(future.getKey(), future.getValue().join());
+						return values;
+					}
+				});
+	}
+
+    /**
+	 * Sets the current values of the fields. By default each field is written separately.
+	 * 
+	 * @param values    The values to set by field.
+	 * @return          The future which completes when all values are set.
+	 */
+	default CompletableFuture<Void> setValuesAsync(Map<FieldRef, Object> values) {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (Map.Entry<FieldRef, Object> value : values.entrySet())
+			futures.add(setValueAsync(value.getKey().getDevice(), value.getKey().getField(), value.getValue()));
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+}
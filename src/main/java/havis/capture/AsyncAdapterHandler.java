@@ -0,0 +1,69 @@
+package havis.capture;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous variant of the value access of {@link AdapterHandler}. The
+ * futures complete exceptionally with an {@link AdapterException} if the
+ * access failed.
+ */
+public interface AsyncAdapterHandler extends AutoCloseable {
+
+	/**
+	 * Gets the device field value
+	 * 
+	 * @param device
+	 *            The device id
+	 * @param field
+	 *            The field id
+	 * @return The future of the device field value
+	 */
+	CompletableFuture<Object> getValue(String device, String field);
+
+	/**
+	 * Gets the last known device field value if it is not older than the
+	 * max age, otherwise the value is read from the device
+	 * 
+	 * @param device
+	 *            The device id
+	 * @param field
+	 *            The field id
+	 * @param maxAge
+	 *            The max age of the value in milliseconds
+	 * @return The future of the device field value
+	 */
+	CompletableFuture<Object> getValue(String device, String field, long maxAge);
+
+	/**
+	 * Sets the device field value
+	 * 
+	 * @param device
+	 *            The device id
+	 * @param field
+	 *            The field id
+	 * @param value
+	 *            The device field value
+	 * @return The future which completes when the value is set
+	 */
+	CompletableFuture<Void> setValue(String device, String field, Object value);
+
+	/**
+	 * Gets the values of several device fields
+	 * 
+	 * @param fields
+	 *            The fields
+	 * @return The future of the values by field
+	 */
+	CompletableFuture<Map<FieldRef, Object>> getValues(Collection<FieldRef> fields);
+
+	/**
+	 * Sets the values of several device fields
+	 * 
+	 * @param values
+	 *            The values by field
+	 * @return The future which completes when all values are set
+	 */
+	CompletableFuture<Void> setValues(Map<FieldRef, Object> values);
+}
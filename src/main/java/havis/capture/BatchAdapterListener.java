@@ -0,0 +1,21 @@
+package havis.capture;
+
+import java.util.List;
+
+/**
+ * BatchAdapterListener extends the callback interface by value changes
+ * delivered in batches. Handlers gather consecutive value changes up to a
+ * max batch size or max latency, usability changes are still passed one by
+ * one in between.
+ *
+ */
+public interface BatchAdapterListener extends AdapterListener {
+
+    /**
+	 * Signals that the values of fields have changed or were captured.
+	 *
+	 * @param source    Instance of the Adapter that send the events.
+     * @param events    The events in the order of their occurrence.
+	 */
+	void valuesChanged(Adapter source, List<FieldValueChangedEvent> events);
+}
@@ -0,0 +1,52 @@
+package havis.capture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Represents a value change of a field with a primitive boolean value. The
+ * value is only boxed if it is requested as object.
+ * 
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class", visible = true)
+public class BooleanValueChangedEvent extends FieldValueChangedEvent {
+
+	private boolean booleanValue;
+	// boxed value, created on first request
+	private volatile Object box;
+
+	public BooleanValueChangedEvent() {
+	}
+
+	public BooleanValueChangedEvent(String device, String field, boolean value) {
+		super(device, field, null);
+		this.booleanValue = value;
+	}
+
+	@JsonIgnore
+	public boolean getBooleanValue() {
+		return booleanValue;
+	}
+
+	@JsonIgnore
+	public void setBooleanValue(boolean value) {
+		this.booleanValue = value;
+		this.box = null;
+	}
+
+	@Override
+	public Object getValue() {
+		Object box = this.box;
+		if (box == null)
+			this.box = box = Boolean.valueOf(booleanValue);
+		return box;
+	}
+
+	@Override
+	public void setValue(Object value) {
+		if (value instanceof Boolean) {
+			this.booleanValue = ((Boolean) value).booleanValue();
+			this.box = null;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package havis.capture;
+
+/**
+ * Capabilities an adapter can declare with {@link AdapterCapabilities}
+ */
+public enum Capability {
+	/**
+	 * The adapter can be called concurrently, calls are not serialized
+	 */
+	THREAD_SAFE,
+	/**
+	 * The adapter reads and writes several fields at once, batch calls are
+	 * passed to the adapter instead of being split into single calls
+	 */
+	BATCH,
+	/**
+	 * The adapter implements {@link AsyncAdapter}, it is detected
+	 * automatically
+	 */
+	ASYNC,
+	/**
+	 * The adapter raises a value event for each change of a subscribed field,
+	 * so the last known value of a subscribed field is always current
+	 */
+	PUSH,
+	/**
+	 * The adapter applies subscription options, the options of all
+	 * subscribers of a field are merged and passed on subscribe
+	 */
+	OPTIONS
+}
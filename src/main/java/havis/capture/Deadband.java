@@ -0,0 +1,86 @@
+package havis.capture;
+
+/**
+ * Passes numeric values of a field to the target only if they differ from
+ * the last passed value by more than the deadband. The deadband is either
+ * absolute or a percentage of the last passed value. Values are compared as
+ * primitive doubles, primitive events are not boxed. Non-numeric values and
+ * usability changes are passed unchanged.
+ */
+class Deadband implements AdapterListener {
+
+	private static class Last {
+
+		private boolean set;
+		private double value;
+	}
+
+	private AdapterListener target;
+	private double deadband;
+	private boolean percent;
+	private FieldMap<Last> values = new FieldMap<>();
+
+	/**
+	 * @param target
+	 *            The listener which receives the events
+	 * @param deadband
+	 *            The deadband
+	 * @param percent
+	 *            True if the deadband is a percentage of the last value
+	 */
+	Deadband(AdapterListener target, double deadband, boolean percent) {
+		this.target = target;
+		this.deadband = deadband;
+		this.percent = percent;
+	}
+
+	/**
+	 * @return True if the value moved beyond the deadband
+	 */
+	private boolean exceeds(double last, double value) {
+		double delta = Math.abs(value - last);
+		if (percent)
+			return delta > Math.abs(last) * deadband / 100;
+		return delta > deadband;
+	}
+
+	@Override
+	public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+		double v;
+		if (event instanceof DoubleValueChangedEvent) {
+			v = ((DoubleValueChangedEvent) event).getDoubleValue();
+		} else if (event instanceof LongValueChangedEvent) {
+			v = ((LongValueChangedEvent) event).getLongValue();
+		} else if (event.getValue() instanceof Number && !(event instanceof BooleanValueChangedEvent)) {
+			v = ((Number) event.getValue()).doubleValue();
+		} else {
+			// the next numeric value is passed
+			values.remove(event.getDevice(), event.getField());
+			target.valueChanged(source, event);
+			return;
+		}
+		Last last = values.get(event.getDevice(), event.getField());
+		if (last == null) {
+			Last current = values.putIfAbsent(event.getDevice(), event.getField(), last = new Last());
+			if (current != null)
+				last = current;
+		}
+		synchronized (last) {
+			if (last.set && !Double.isNaN(v) && !Double.isNaN(last.value) && !exceeds(last.value, v))
+				return;
+			last.set = true;
+			last.value = v;
+		}
+		target.valueChanged(source, event);
+	}
+
+	@Override
+	public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+		target.usabilityChanged(source, event);
+	}
+
+	@Override
+	public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+		target.usabilityChanged(source, event);
+	}
+}
@@ -0,0 +1,174 @@
+package havis.capture;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locks striped by device ID. Calls for different devices can run in
+ * parallel, calls for the same device are serialized. Reading the device
+ * inventory only excludes adding or removing devices.
+ */
+class DeviceLocks {
+
+	enum Mode {
+		/**
+		 * All calls share one single lock
+		 */
+		GLOBAL,
+		/**
+		 * Calls are serialized per device
+		 */
+		DEVICE,
+		/**
+		 * Calls are not serialized at all
+		 */
+		NONE
+	}
+
+	private final static Lock NONE = new Lock() {
+		@Override
+		public void lock() {
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+		}
+
+		@Override
+		public boolean tryLock() {
+			return true;
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			return true;
+		}
+
+		@Override
+		public void unlock() {
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	private ReadWriteLock inventory;
+	private ReadWriteLock[] stripes;
+
+	/**
+	 * @param stripes
+	 *            The number of stripes
+	 * @param mode
+	 *            The locking mode
+	 */
+	DeviceLocks(int stripes, Mode mode) {
+		if (mode != Mode.DEVICE) {
+			final Lock lock = mode == Mode.GLOBAL ? new ReentrantLock() : NONE;
+			inventory = new ReadWriteLock() {
+				@Override
+				public Lock readLock() {
+					return lock;
+				}
+
+				@Override
+				public Lock writeLock() {
+					return lock;
+				}
+			};
+			this.stripes = new ReadWriteLock[] { inventory };
+		} else {
+			inventory = new ReentrantReadWriteLock();
+			this.stripes = new ReadWriteLock[Math.max(1, stripes)];
+			for (int i = 0; i < this.stripes.length; i++)
+				this.stripes[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	private int index(String device) {
+		return device == null ? 0 : (device.hashCode() & 0x7fffffff) % stripes.length;
+	}
+
+	private ReadWriteLock stripe(String device) {
+		return stripes[index(device)];
+	}
+
+	/**
+	 * @return The distinct stripes of the devices in lock order
+	 */
+	private ReadWriteLock[] stripes(Collection<String> devices) {
+		boolean[] used = new boolean[stripes.length];
+		int count = 0;
+		for (String device : devices) {
+			int index = index(device);
+			if (!used[index]) {
+				used[index] = true;
+				count++;
+			}
+		}
+		ReadWriteLock[] stripes = new ReadWriteLock[count];
+		for (int i = 0, j = 0; i < used.length; i++)
+			if (used[i])
+				stripes[j++] = this.stripes[i];
+		return stripes;
+	}
+
+	/**
+	 * Locks the inventory
+	 * 
+	 * @param exclusive
+	 *            True to add or remove devices, false to read the inventory
+	 */
+	void lock(boolean exclusive) {
+		(exclusive ? inventory.writeLock() : inventory.readLock()).lock();
+	}
+
+	void unlock(boolean exclusive) {
+		(exclusive ? inventory.writeLock() : inventory.readLock()).unlock();
+	}
+
+	/**
+	 * Locks a single device
+	 * 
+	 * @param device
+	 *            The device id
+	 * @param exclusive
+	 *            True to access the device, false to read device meta data
+	 */
+	void lock(String device, boolean exclusive) {
+		inventory.readLock().lock();
+		ReadWriteLock stripe = stripe(device);
+		(exclusive ? stripe.writeLock() : stripe.readLock()).lock();
+	}
+
+	void unlock(String device, boolean exclusive) {
+		ReadWriteLock stripe = stripe(device);
+		(exclusive ? stripe.writeLock() : stripe.readLock()).unlock();
+		inventory.readLock().unlock();
+	}
+
+	/**
+	 * Locks several devices exclusively. The stripes are always locked in the
+	 * same order to avoid dead locks.
+	 * 
+	 * @param devices
+	 *            The device ids
+	 */
+	void lock(Collection<String> devices) {
+		inventory.readLock().lock();
+		for (ReadWriteLock stripe : stripes(devices))
+			stripe.writeLock().lock();
+	}
+
+	void unlock(Collection<String> devices) {
+		for (ReadWriteLock stripe : stripes(devices))
+			stripe.writeLock().unlock();
+		inventory.readLock().unlock();
+	}
+}
@@ -0,0 +1,186 @@
+package havis.capture;
+
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches events on a fixed number of lanes. Events are assigned to a lane
+ * by device and field, so events of the same field keep their order while
+ * events of different fields are delivered in parallel. Each lane has a
+ * bounded queue, the overflow policy defines what happens if it is full.
+ * Usability changes are delivered ahead of queued values. Optionally each
+ * lane uses a pre-allocated ring instead of a queue, which always blocks if it
+ * is full and doesn't conflate values. Usability changes then bypass the
+ * rings on a separate control lane.
+ */
+class Dispatcher {
+
+	private class Lane implements Runnable {
+
+		private EventQueue queue;
+		private RingBuffer ring;
+		private Thread thread;
+
+		private Lane(EventQueue queue, RingBuffer ring, String name) {
+			this.queue = queue;
+			this.ring = ring;
+			this.thread = new Thread(this, name);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		@Override
+		public void run() {
+			LANE.set(this);
+			if (ring != null) {
+				while (!Thread.currentThread().isInterrupted()) {
+					try {
+						ring.consume(target);
+					} catch (InterruptedException e) {
+						return;
+					} catch (RuntimeException e) {
+						log.log(Level.WARNING, "Failed to deliver event", e);
+					}
+				}
+				return;
+			}
+			EventQueue.Entry entry = null;
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					entry = queue.take(entry);
+				} catch (InterruptedException e) {
+					return;
+				}
+				try {
+					entry.deliver(target);
+				} catch (RuntimeException e) {
+					log.log(Level.WARNING, "Failed to deliver event", e);
+				}
+			}
+		}
+	}
+
+	private final static Logger log = Logger.getLogger(Dispatcher.class.getName());
+
+	// lane of the current thread
+	private final static ThreadLocal<Lane> LANE = new ThreadLocal<>();
+
+	private AdapterListener target;
+	private Lane[] lanes;
+	// lane of the usability changes if the lanes use rings
+	private Lane control;
+	private OverflowPolicy policy;
+
+	/**
+	 * @param target
+	 *            The listener which receives the dispatched events
+	 * @param lanes
+	 *            The number of lanes
+	 * @param capacity
+	 *            The queue capacity of each lane
+	 * @param policy
+	 *            The policy if a queue is full
+	 * @param strategy
+	 *            The wait strategy of the lanes if rings shall be used instead
+	 *            of queues, or null
+	 */
+	Dispatcher(AdapterListener target, int lanes, int capacity, OverflowPolicy policy, WaitStrategy strategy) {
+		this.target = target;
+		this.policy = strategy == null ? policy : OverflowPolicy.BLOCK;
+		this.lanes = new Lane[Math.max(1, lanes)];
+		for (int i = 0; i < this.lanes.length; i++) {
+			if (strategy != null)
+				this.lanes[i] = new Lane(null, new RingBuffer(capacity, strategy), "havis.capture.dispatch-" + i);
+			else
+				this.lanes[i] = new Lane(new EventQueue(capacity, policy == OverflowPolicy.LATEST ? OverflowPolicy.BLOCK : policy), null,
+						"havis.capture.dispatch-" + i);
+		}
+		if (strategy != null)
+			control = new Lane(new EventQueue(capacity, OverflowPolicy.BLOCK), null, "havis.capture.dispatch-control");
+	}
+
+	/**
+	 * @return True if the current thread is a dispatch lane. Only lanes may
+	 *         wait for a full mailbox, timers and parallel delivery are
+	 *         shared by all handlers.
+	 */
+	static boolean isLane() {
+		return LANE.get() != null;
+	}
+
+	private Lane lane(String device, String field) {
+		return lanes[((31 * Objects.hashCode(device) + Objects.hashCode(field)) & 0x7fffffff) % lanes.length];
+	}
+
+	/**
+	 * Queues the event on the lane of its device and field
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param event
+	 *            The event
+	 */
+	void dispatch(Adapter source, DeviceStateChangedEvent event) {
+		dispatch(source, -1, event);
+	}
+
+	/**
+	 * Queues the event on the lane of its device and field. The handle is
+	 * passed with the event to a target accepting handles.
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param handle
+	 *            The handle of the field or -1
+	 * @param event
+	 *            The event
+	 */
+	void dispatch(Adapter source, int handle, DeviceStateChangedEvent event) {
+		if (control != null && !(event instanceof FieldValueChangedEvent)) {
+			control.queue.offer(source, event, false);
+			return;
+		}
+		String field = event instanceof FieldStateChangedEvent ? ((FieldStateChangedEvent) event).getField() : null;
+		Lane lane = lane(event.getDevice(), field);
+		if (lane.ring != null)
+			lane.ring.publish(source, handle, event);
+		else
+			lane.queue.offer(source, handle, event, policy == OverflowPolicy.LATEST, true);
+	}
+
+	/**
+	 * @return The number of events dropped because a queue was full
+	 */
+	long getDropped() {
+		long dropped = 0;
+		for (Lane lane : lanes)
+			if (lane.queue != null)
+				dropped += lane.queue.getDropped();
+		return dropped;
+	}
+
+	/**
+	 * @return The number of queued values replaced by a newer value
+	 */
+	long getCoalesced() {
+		long coalesced = 0;
+		for (Lane lane : lanes)
+			if (lane.queue != null)
+				coalesced += lane.queue.getCoalesced();
+		return coalesced;
+	}
+
+	/**
+	 * Stops all lanes. Pending events are discarded.
+	 */
+	void shutdown() {
+		for (Lane lane : lanes) {
+			if (lane.ring != null)
+				lane.ring.close();
+			lane.thread.interrupt();
+		}
+		if (control != null)
+			control.thread.interrupt();
+	}
+}
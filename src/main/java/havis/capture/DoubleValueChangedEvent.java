@@ -0,0 +1,52 @@
+package havis.capture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Represents a value change of a field with a primitive double value. The
+ * value is only boxed if it is requested as object.
+ * 
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class", visible = true)
+public class DoubleValueChangedEvent extends FieldValueChangedEvent {
+
+	private double doubleValue;
+	// boxed value, created on first request
+	private volatile Object box;
+
+	public DoubleValueChangedEvent() {
+	}
+
+	public DoubleValueChangedEvent(String device, String field, double value) {
+		super(device, field, null);
+		this.doubleValue = value;
+	}
+
+	@JsonIgnore
+	public double getDoubleValue() {
+		return doubleValue;
+	}
+
+	@JsonIgnore
+	public void setDoubleValue(double value) {
+		this.doubleValue = value;
+		this.box = null;
+	}
+
+	@Override
+	public Object getValue() {
+		Object box = this.box;
+		if (box == null)
+			this.box = box = Double.valueOf(doubleValue);
+		return box;
+	}
+
+	@Override
+	public void setValue(Object value) {
+		if (value instanceof Number) {
+			this.doubleValue = ((Number) value).doubleValue();
+			this.box = null;
+		}
+	}
+}
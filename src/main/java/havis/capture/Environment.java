@@ -19,4 +19,95 @@ public class Environment {
 			log.log(Level.SEVERE, "Failed to load environment properties", e);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Number of lock stripes used to serialize device access
+	 */
+	public final static int LOCK_STRIPES = Integer.parseInt(properties.getProperty("havis.capture.lock.stripes", "16"));
+
+	/**
+	 * Number of lanes used to dispatch adapter events
+	 */
+	public final static int DISPATCH_LANES = Integer.parseInt(properties.getProperty("havis.capture.dispatch.lanes", "1"));
+
+	/**
+	 * Capacity of the event queue of each dispatch lane
+	 */
+	public final static int DISPATCH_CAPACITY = Integer.parseInt(properties.getProperty("havis.capture.dispatch.capacity", "10000"));
+
+	/**
+	 * Policy if the event queue of a dispatch lane is full
+	 */
+	public final static OverflowPolicy DISPATCH_POLICY = OverflowPolicy.valueOf(properties.getProperty("havis.capture.dispatch.policy", OverflowPolicy.BLOCK.name()));
+
+	/**
+	 * Whether the dispatch lanes use pre-allocated rings instead of queues
+	 */
+	public final static boolean DISPATCH_RING = Boolean.parseBoolean(properties.getProperty("havis.capture.dispatch.ring", "false"));
+
+	/**
+	 * Strategy of the dispatch lanes to wait for new events if rings are used
+	 */
+	public final static WaitStrategy DISPATCH_WAIT = WaitStrategy.valueOf(properties.getProperty("havis.capture.dispatch.wait", WaitStrategy.BLOCKING.name()));
+
+	/**
+	 * Number of threads used to call blocking adapters asynchronously
+	 */
+	public final static int ASYNC_THREADS = Integer.parseInt(properties.getProperty("havis.capture.async.threads", "8"));
+
+	/**
+	 * Max number of pending events of each handler
+	 */
+	public final static int MAILBOX_CAPACITY = Integer.parseInt(properties.getProperty("havis.capture.mailbox.capacity", "1000"));
+
+	/**
+	 * Policy if the pending events of a handler exceed the capacity. By
+	 * default the oldest pending events are dropped, so a slow handler
+	 * doesn't delay the others. Waiting policies only wait on the dispatch
+	 * lanes, events passed by timers or parallel delivery are dropped
+	 * instead.
+	 */
+	public final static OverflowPolicy MAILBOX_POLICY = OverflowPolicy.valueOf(properties.getProperty("havis.capture.mailbox.policy",
+			OverflowPolicy.DROP_OLDEST.name()));
+
+	/**
+	 * Number of threads used to deliver the events of all handlers
+	 */
+	public final static int MAILBOX_THREADS = Integer.parseInt(properties.getProperty("havis.capture.mailbox.threads",
+			Integer.toString(Runtime.getRuntime().availableProcessors() * 2)));
+
+	/**
+	 * Max number of value events passed to a batch listener at once
+	 */
+	public final static int MAILBOX_BATCH_SIZE = Integer.parseInt(properties.getProperty("havis.capture.mailbox.batch.size", "256"));
+
+	/**
+	 * Max time in milliseconds a value event waits for a batch to fill
+	 */
+	public final static long MAILBOX_BATCH_LATENCY = Long.parseLong(properties.getProperty("havis.capture.mailbox.batch.latency", "5"));
+
+	/**
+	 * Number of listeners of a field from which a value change is passed to
+	 * the listeners in parallel, 0 to always pass it sequentially
+	 */
+	public final static int FANOUT_THRESHOLD = Integer.parseInt(properties.getProperty("havis.capture.fanout.threshold", "0"));
+
+	/**
+	 * Number of threads used to pass a value change to the listeners in
+	 * parallel
+	 */
+	public final static int FANOUT_THREADS = Integer.parseInt(properties.getProperty("havis.capture.fanout.threads",
+			Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+	/**
+	 * Time in milliseconds the adapter is kept open after the last handler
+	 * has been closed, 0 to close it immediately
+	 */
+	public final static long ADAPTER_LINGER = Long.parseLong(properties.getProperty("havis.capture.adapter.linger", "0"));
+
+	/**
+	 * Whether the adapters are opened on start before the first handler is
+	 * created
+	 */
+	public final static boolean ADAPTER_PREWARM = Boolean.parseBoolean(properties.getProperty("havis.capture.adapter.prewarm", "false"));
+}
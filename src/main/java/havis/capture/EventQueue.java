@@ -0,0 +1,435 @@
+package havis.capture;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of adapter events. The overflow policy defines what happens if
+ * the queue is full. Conflated values replace a queued value of the same
+ * field. Usability changes are kept in a separate control lane, which is
+ * drained ahead of the values. They are not limited by the capacity, so an
+ * outage is delivered without waiting for queued values. Instead a queued
+ * usability change is replaced by a newer change of the same device or
+ * field, which bounds the control lane by the number of devices and fields.
+ * Delivered entries are passed back and reused, so a warm queue doesn't
+ * allocate per event.
+ */
+class EventQueue {
+
+	static class Entry {
+		Adapter source;
+		DeviceStateChangedEvent event;
+		// handle of the field or -1
+		int handle;
+		long time;
+
+		/**
+		 * Passes the event to the listener method matching its type
+		 */
+		void deliver(AdapterListener target) {
+			EventQueue.deliver(target, source, handle, event);
+		}
+	}
+
+	/**
+	 * Passes the event to the listener method matching its type
+	 */
+	static void deliver(AdapterListener target, Adapter source, DeviceStateChangedEvent event) {
+		deliver(target, source, -1, event);
+	}
+
+	/**
+	 * Passes the event to the listener method matching its type. Values with
+	 * a handle are passed by handle if the listener accepts handles.
+	 */
+	static void deliver(AdapterListener target, Adapter source, int handle, DeviceStateChangedEvent event) {
+		if (event instanceof FieldValueChangedEvent) {
+			if (handle >= 0 && target instanceof FieldHandleListener)
+				((FieldHandleListener) target).valueChanged(source, handle, (FieldValueChangedEvent) event);
+			else
+				target.valueChanged(source, (FieldValueChangedEvent) event);
+		} else if (event instanceof FieldUsabilityChangedEvent) {
+			target.usabilityChanged(source, (FieldUsabilityChangedEvent) event);
+		} else if (event instanceof DeviceUsabilityChangedEvent) {
+			target.usabilityChanged(source, (DeviceUsabilityChangedEvent) event);
+		}
+	}
+
+	private Lock lock = new ReentrantLock();
+	private Condition notEmpty = lock.newCondition();
+	private Condition notFull = lock.newCondition();
+	private ArrayDeque<Entry> queue = new ArrayDeque<>();
+	// queued usability changes
+	private ArrayDeque<Entry> control = new ArrayDeque<>();
+	// delivered entries for reuse
+	private ArrayDeque<Entry> free = new ArrayDeque<>();
+	// queued usability changes by device and by device and field
+	private Map<String, Entry> devices = new HashMap<>();
+	private Map<String, Map<String, Entry>> fields = new HashMap<>();
+	// queued conflated values by device and field
+	private Map<String, Map<String, Entry>> latest = new HashMap<>();
+	private int capacity;
+	private OverflowPolicy policy;
+	private LongAdder dropped = new LongAdder();
+	private LongAdder coalesced = new LongAdder();
+
+	/**
+	 * @param capacity
+	 *            The capacity of the queue
+	 * @param policy
+	 *            The policy if the queue is full
+	 */
+	EventQueue(int capacity, OverflowPolicy policy) {
+		this.capacity = Math.max(1, capacity);
+		this.policy = policy;
+	}
+
+	private static String field(DeviceStateChangedEvent event) {
+		return ((FieldValueChangedEvent) event).getField();
+	}
+
+	private Entry pending(DeviceStateChangedEvent event) {
+		Map<String, Entry> fields = latest.get(event.getDevice());
+		return fields != null ? fields.get(field(event)) : null;
+	}
+
+	/**
+	 * @return The queued usability change of the same device or field
+	 */
+	private Entry usability(DeviceStateChangedEvent event) {
+		if (event instanceof FieldStateChangedEvent) {
+			Map<String, Entry> f = fields.get(event.getDevice());
+			return f != null ? f.get(((FieldStateChangedEvent) event).getField()) : null;
+		}
+		return devices.get(event.getDevice());
+	}
+
+	/**
+	 * @return A reused or new entry of the event
+	 */
+	private Entry entry(Adapter source, int handle, DeviceStateChangedEvent event) {
+		Entry entry = free.poll();
+		if (entry == null)
+			entry = new Entry();
+		entry.source = source;
+		entry.handle = handle;
+		entry.event = event;
+		entry.time = System.nanoTime();
+		return entry;
+	}
+
+	/**
+	 * Keeps the entry for reuse, up to the capacity
+	 */
+	private void recycle(Entry entry) {
+		if (entry == null)
+			return;
+		entry.source = null;
+		entry.event = null;
+		if (free.size() < capacity)
+			free.add(entry);
+	}
+
+	private void forget(Entry entry) {
+		if (entry.event instanceof FieldValueChangedEvent) {
+			Map<String, Entry> fields = latest.get(entry.event.getDevice());
+			if (fields != null && fields.get(field(entry.event)) == entry) {
+				fields.remove(field(entry.event));
+				if (fields.isEmpty())
+					latest.remove(entry.event.getDevice());
+			}
+		}
+	}
+
+	/**
+	 * Queues the event
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param event
+	 *            The event
+	 * @param conflate
+	 *            True if the value event shall replace a queued value of the
+	 *            same field
+	 * @return True if a new entry has been queued, false if the event
+	 *         replaced a queued value or has been dropped
+	 */
+	boolean offer(Adapter source, DeviceStateChangedEvent event, boolean conflate) {
+		return offer(source, -1, event, conflate, true);
+	}
+
+	/**
+	 * Queues the event
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param event
+	 *            The event
+	 * @param conflate
+	 *            True if the value event shall replace a queued value of the
+	 *            same field
+	 * @param wait
+	 *            False to drop the oldest value instead of waiting, if the
+	 *            policy waits while the queue is full
+	 * @return True if a new entry has been queued, false if the event
+	 *         replaced a queued value or has been dropped
+	 */
+	boolean offer(Adapter source, DeviceStateChangedEvent event, boolean conflate, boolean wait) {
+		return offer(source, -1, event, conflate, wait);
+	}
+
+	/**
+	 * Queues the event
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param handle
+	 *            The handle of the field or -1
+	 * @param event
+	 *            The event
+	 * @param conflate
+	 *            True if the value event shall replace a queued value of the
+	 *            same field
+	 * @param wait
+	 *            False to drop the oldest value instead of waiting, if the
+	 *            policy waits while the queue is full
+	 * @return True if a new entry has been queued, false if the event
+	 *         replaced a queued value or has been dropped
+	 */
+	boolean offer(Adapter source, int handle, DeviceStateChangedEvent event, boolean conflate, boolean wait) {
+		conflate = conflate && event instanceof FieldValueChangedEvent;
+		lock.lock();
+		try {
+			if (!(event instanceof FieldValueChangedEvent)) {
+				Entry entry = usability(event);
+				if (entry != null) {
+					entry.source = source;
+					entry.event = event;
+					coalesced.increment();
+					return false;
+				}
+				entry = entry(source, -1, event);
+				control.add(entry);
+				if (event instanceof FieldStateChangedEvent) {
+					Map<String, Entry> f = fields.get(event.getDevice());
+					if (f == null)
+						fields.put(event.getDevice(), f = new HashMap<>());
+					f.put(((FieldStateChangedEvent) event).getField(), entry);
+				} else {
+					devices.put(event.getDevice(), entry);
+				}
+				notEmpty.signal();
+				return true;
+			}
+			if (conflate) {
+				Entry entry = pending(event);
+				if (entry != null) {
+					entry.source = source;
+					entry.handle = handle;
+					entry.event = event;
+					coalesced.increment();
+					return false;
+				}
+			}
+			while (queue.size() >= capacity) {
+				switch (policy) {
+				case DROP_NEWEST:
+					dropped.increment();
+					return false;
+				case DROP_OLDEST:
+					drop();
+					break;
+				default:
+					if (!wait) {
+						drop();
+						break;
+					}
+					try {
+						notFull.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						dropped.increment();
+						return false;
+					}
+				}
+			}
+			Entry entry = entry(source, handle, event);
+			queue.add(entry);
+			if (conflate) {
+				Map<String, Entry> fields = latest.get(event.getDevice());
+				if (fields == null)
+					latest.put(event.getDevice(), fields = new HashMap<>());
+				fields.put(field(event), entry);
+			}
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void drop() {
+		Entry entry = queue.poll();
+		forget(entry);
+		recycle(entry);
+		dropped.increment();
+	}
+
+	/**
+	 * @return The next entry or null if the queue is empty
+	 */
+	Entry poll() {
+		return poll(null);
+	}
+
+	/**
+	 * Takes the next entry. Entries are reused, so the caller passes back its
+	 * previous entry once the entry has been delivered.
+	 * 
+	 * @param delivered
+	 *            The previous entry of the caller or null
+	 * @return The next entry or null if the queue is empty
+	 */
+	Entry poll(Entry delivered) {
+		lock.lock();
+		try {
+			recycle(delivered);
+			Entry entry = control.poll();
+			if (entry != null) {
+				if (entry.event instanceof FieldStateChangedEvent) {
+					Map<String, Entry> f = fields.get(entry.event.getDevice());
+					if (f != null) {
+						f.remove(((FieldStateChangedEvent) entry.event).getField());
+						if (f.isEmpty())
+							fields.remove(entry.event.getDevice());
+					}
+				} else {
+					devices.remove(entry.event.getDevice());
+				}
+				return entry;
+			}
+			entry = queue.poll();
+			if (entry != null) {
+				forget(entry);
+				notFull.signal();
+			}
+			return entry;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for the next entry, see {@link #poll(Entry)}
+	 * 
+	 * @param delivered
+	 *            The previous entry of the caller or null
+	 * @return The next entry
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting
+	 */
+	Entry take(Entry delivered) throws InterruptedException {
+		lock.lock();
+		try {
+			recycle(delivered);
+			while (queue.isEmpty() && control.isEmpty())
+				notEmpty.await();
+			return poll(null);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Passes back the entry of a caller which stops taking entries, see
+	 * {@link #poll(Entry)}
+	 * 
+	 * @param delivered
+	 *            The previous entry of the caller or null
+	 */
+	void release(Entry delivered) {
+		if (delivered == null)
+			return;
+		lock.lock();
+		try {
+			recycle(delivered);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all queued entries and releases waiting producers
+	 */
+	void clear() {
+		lock.lock();
+		try {
+			queue.clear();
+			control.clear();
+			devices.clear();
+			fields.clear();
+			latest.clear();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of queued entries
+	 */
+	int size() {
+		lock.lock();
+		try {
+			return queue.size() + control.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return True if usability changes are queued
+	 */
+	boolean hasControl() {
+		lock.lock();
+		try {
+			return !control.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The time in nanoseconds the oldest entry has been queued
+	 */
+	long getLag() {
+		lock.lock();
+		try {
+			Entry entry = queue.peek(), first = control.peek();
+			if (entry == null || first != null && first.time - entry.time < 0)
+				entry = first;
+			return entry != null ? System.nanoTime() - entry.time : 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of dropped events
+	 */
+	long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * @return The number of queued values replaced by a newer value
+	 */
+	long getCoalesced() {
+		return coalesced.sum();
+	}
+}
@@ -0,0 +1,63 @@
+package havis.capture;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Passes a value change to a list of listeners in parallel. The list is split
+ * in halves until each part is small enough to be called sequentially. The
+ * caller invokes the action and waits for all listeners, so each listener
+ * still receives the values of a field in order.
+ */
+class FanOut extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final static Logger log = Logger.getLogger(FanOut.class.getName());
+
+	private final Object[] listeners;
+	private final int from, to, chunk;
+	private final Adapter source;
+	private final FieldValueChangedEvent event;
+
+	/**
+	 * @param listeners
+	 *            The listeners, see {@link ListenerList#snapshot()}
+	 * @param chunk
+	 *            The max number of listeners called sequentially
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param event
+	 *            The event
+	 */
+	FanOut(Object[] listeners, int chunk, Adapter source, FieldValueChangedEvent event) {
+		this(listeners, 0, listeners.length, Math.max(1, chunk), source, event);
+	}
+
+	private FanOut(Object[] listeners, int from, int to, int chunk, Adapter source, FieldValueChangedEvent event) {
+		this.listeners = listeners;
+		this.from = from;
+		this.to = to;
+		this.chunk = chunk;
+		this.source = source;
+		this.event = event;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from > chunk) {
+			int middle = (from + to) >>> 1;
+			invokeAll(new FanOut(listeners, from, middle, chunk, source, event), new FanOut(listeners, middle, to, chunk, source, event));
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			try {
+				((AdapterListener) listeners[i]).valueChanged(source, event);
+			} catch (RuntimeException e) {
+				// don't cancel the other parts
+				log.log(Level.WARNING, "Failed to deliver event", e);
+			}
+		}
+	}
+}
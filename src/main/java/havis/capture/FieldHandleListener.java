@@ -0,0 +1,30 @@
+package havis.capture;
+
+/**
+ * FieldHandleListener extends the callback interface by integer field
+ * handles. An adapter may check if its listener is a FieldHandleListener,
+ * get the handle of a field once on subscribe and raise the value changes
+ * of the field by handle, which saves the lookup of the field per event.
+ *
+ */
+public interface FieldHandleListener extends AdapterListener {
+
+    /**
+	 * Gets the handle of a field. The handle is stable while the listener
+     * is in use.
+	 *
+	 * @param device    The id of the device.
+     * @param field     The id of the field.
+     * @return The field handle.
+	 */
+	int getHandle(String device, String field);
+
+    /**
+	 * Signals that the value of the field with the handle has changed or was captured.
+	 *
+	 * @param source    Instance of the Adapter that send the event.
+     * @param handle    The field handle.
+     * @param event     The event containing all needed information.
+	 */
+	void valueChanged(Adapter source, int handle, FieldValueChangedEvent event);
+}
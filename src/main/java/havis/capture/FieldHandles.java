@@ -0,0 +1,203 @@
+package havis.capture;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of stable integer handles of device fields. Each field gets a slot
+ * with its listeners and its last known value, which is found by device and
+ * field id through a two level map or by handle through an array. Lookups
+ * don't allocate, handles are never reused.
+ */
+class FieldHandles {
+
+	// map key of null ids
+	private final static String NULL = "\u0000";
+
+	/**
+	 * State of a single field
+	 */
+	static class Slot {
+
+		private final int handle;
+		private final FieldRef ref;
+		volatile ListenerList<AdapterListener> listeners;
+		// the event is written before the time, see sample
+		private volatile FieldValueChangedEvent event;
+		private volatile long time;
+		private volatile boolean sampled;
+		// number of writes, guarded by the slot
+		private long writes;
+
+		private Slot(int handle, String device, String field) {
+			this.handle = handle;
+			this.ref = new FieldRef(device, field);
+		}
+
+		int getHandle() {
+			return handle;
+		}
+
+		FieldRef getRef() {
+			return ref;
+		}
+
+		/**
+		 * Sets the last known value. Primitive values are kept unboxed until
+		 * requested.
+		 */
+		void sample(FieldValueChangedEvent event) {
+			this.event = event;
+			this.time = System.nanoTime();
+			this.sampled = true;
+		}
+
+		/**
+		 * Sets the last known value
+		 */
+		void sample(Object value) {
+			sample(new FieldValueChangedEvent(ref.getDevice(), ref.getField(), value));
+		}
+
+		/**
+		 * Sets the last known value read from the adapter, unless the field
+		 * has been written since the read started
+		 * 
+		 * @param value
+		 *            The value
+		 * @param writes
+		 *            The number of writes when the read started
+		 * @return True if the value has been set
+		 */
+		synchronized boolean sample(Object value, long writes) {
+			if (this.writes != writes)
+				return false;
+			sample(value);
+			return true;
+		}
+
+		/**
+		 * @return The number of writes, see {@link #sample(Object, long)}
+		 */
+		synchronized long getWrites() {
+			return writes;
+		}
+
+		/**
+		 * Removes the last known value. Values of reads started before are
+		 * dropped.
+		 */
+		synchronized void invalidate() {
+			writes++;
+			sampled = false;
+		}
+
+		/**
+		 * @return True if a last known value exists
+		 */
+		boolean isSampled() {
+			return sampled;
+		}
+
+		/**
+		 * @return True if the last known value is not older than max age
+		 */
+		boolean isValid(long maxAge) {
+			return sampled && maxAge > 0 && System.nanoTime() - time <= TimeUnit.MILLISECONDS.toNanos(maxAge);
+		}
+
+		/**
+		 * @return The last known value
+		 */
+		Object getValue() {
+			FieldValueChangedEvent event = this.event;
+			return event != null ? event.getValue() : null;
+		}
+	}
+
+	private final Map<String, Map<String, Slot>> devices = new ConcurrentHashMap<>();
+	private volatile Slot[] slots = new Slot[64];
+	private int size;
+
+	private static String key(String id) {
+		return id != null ? id : NULL;
+	}
+
+	/**
+	 * @return The slot of the field or null if the field has no handle
+	 */
+	Slot get(String device, String field) {
+		Map<String, Slot> fields = devices.get(key(device));
+		return fields != null ? fields.get(key(field)) : null;
+	}
+
+	/**
+	 * @return The slot of the handle or null if the handle is unknown
+	 */
+	Slot get(int handle) {
+		Slot[] slots = this.slots;
+		return handle >= 0 && handle < slots.length ? slots[handle] : null;
+	}
+
+	/**
+	 * @return The slot of the field, a new handle is assigned on first use
+	 */
+	Slot register(String device, String field) {
+		Slot slot = get(device, field);
+		if (slot != null)
+			return slot;
+		synchronized (this) {
+			Map<String, Slot> fields = devices.get(key(device));
+			if (fields == null)
+				devices.put(key(device), fields = new ConcurrentHashMap<>());
+			slot = fields.get(key(field));
+			if (slot == null) {
+				slot = new Slot(size, device, field);
+				Slot[] slots = this.slots;
+				if (size == slots.length)
+					slots = Arrays.copyOf(slots, size * 2);
+				slots[size++] = slot;
+				this.slots = slots;
+				// published last, so readers of the map find the slot by handle
+				fields.put(key(field), slot);
+			}
+			return slot;
+		}
+	}
+
+	/**
+	 * Removes the slots of the device without listeners, their handles are
+	 * not reused. Slots with listeners are kept for the subscriptions but lose
+	 * their last known value.
+	 */
+	synchronized void remove(String device) {
+		Map<String, Slot> fields = devices.get(key(device));
+		if (fields == null)
+			return;
+		Slot[] slots = this.slots;
+		for (Iterator<Slot> i = fields.values().iterator(); i.hasNext();) {
+			Slot slot = i.next();
+			slot.invalidate();
+			slot.event = null;
+			if (slot.listeners == null) {
+				i.remove();
+				slots[slot.handle] = null;
+			}
+		}
+		if (fields.isEmpty())
+			devices.remove(key(device));
+	}
+
+	/**
+	 * @return The slots of all fields of the device with a handle
+	 */
+	Collection<Slot> getSlots(String device) {
+		Map<String, Slot> fields = devices.get(key(device));
+		return fields != null ? fields.values() : Collections.<Slot> emptyList();
+	}
+}
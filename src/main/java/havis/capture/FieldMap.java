@@ -0,0 +1,65 @@
+package havis.capture;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent map of values by device and field id. Unlike a map keyed by
+ * {@link FieldRef}, lookups don't allocate a key per event. Null ids are
+ * supported.
+ *
+ * @param <V>
+ *            The value type
+ */
+class FieldMap<V> {
+
+	// map key of null ids
+	private final static String NULL = "\u0000";
+
+	private final Map<String, Map<String, V>> devices = new ConcurrentHashMap<>();
+
+	private static String key(String id) {
+		return id != null ? id : NULL;
+	}
+
+	/**
+	 * @return The value of the field or null
+	 */
+	V get(String device, String field) {
+		Map<String, V> fields = devices.get(key(device));
+		return fields != null ? fields.get(key(field)) : null;
+	}
+
+	/**
+	 * Sets the value unless the field has a value
+	 * 
+	 * @return The current value or null if the value has been set
+	 */
+	V putIfAbsent(String device, String field, V value) {
+		Map<String, V> fields = devices.get(key(device));
+		if (fields == null) {
+			Map<String, V> current = devices.putIfAbsent(key(device), fields = new ConcurrentHashMap<>());
+			if (current != null)
+				fields = current;
+		}
+		return fields.putIfAbsent(key(field), value);
+	}
+
+	/**
+	 * Removes the value of the field. The device entry is kept for later
+	 * values.
+	 * 
+	 * @return The removed value or null
+	 */
+	V remove(String device, String field) {
+		Map<String, V> fields = devices.get(key(device));
+		return fields != null ? fields.remove(key(field)) : null;
+	}
+
+	/**
+	 * Removes all values
+	 */
+	void clear() {
+		devices.clear();
+	}
+}
@@ -0,0 +1,64 @@
+package havis.capture;
+
+import java.util.Objects;
+
+/**
+ * Refers to a field of a device.
+ * 
+ */
+public class FieldRef {
+
+	private final String device;
+	private final String field;
+
+	/**
+	 * Creates a new reference to a device field.
+	 * 
+	 * @param device
+	 *            The device id.
+	 * @param field
+	 *            The field id.
+	 */
+	public FieldRef(String device, String field) {
+		this.device = device;
+		this.field = field;
+	}
+
+	/**
+	 * Retrieves the id of the device.
+	 * 
+	 * @return The device id.
+	 */
+	public String getDevice() {
+		return device;
+	}
+
+	/**
+	 * Retrieves the id of the field.
+	 * 
+	 * @return The field id.
+	 */
+	public String getField() {
+		return field;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof FieldRef))
+			return false;
+		FieldRef other = (FieldRef) obj;
+		return Objects.equals(device, other.device) && Objects.equals(field, other.field);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Objects.hashCode(device) + Objects.hashCode(field);
+	}
+
+	@Override
+	public String toString() {
+		return device + "/" + field;
+	}
+}
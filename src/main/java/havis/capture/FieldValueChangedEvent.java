@@ -1,5 +1,6 @@
 package havis.capture;
 
+import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
 /**
@@ -9,6 +10,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
  * 
  */
 @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class", visible = true)
+@JsonSubTypes({ @JsonSubTypes.Type(value = DoubleValueChangedEvent.class), @JsonSubTypes.Type(value = LongValueChangedEvent.class),
+		@JsonSubTypes.Type(value = BooleanValueChangedEvent.class) })
 public class FieldValueChangedEvent extends FieldStateChangedEvent {
 
 	private Object value;
@@ -0,0 +1,107 @@
+package havis.capture;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Represents a snapshot of the devices of an adapter. The map of devices is
+ * immutable, the devices are the instances of the adapter, so adapter
+ * specific subclasses are kept and must not be modified.
+ * 
+ */
+public class Inventory {
+
+	private long version;
+	private Map<String, Device> devices;
+
+	/**
+	 * Creates a new snapshot of the devices.
+	 * 
+	 * @param version
+	 *            The version of the snapshot.
+	 * @param devices
+	 *            The devices, the map is copied.
+	 */
+	public Inventory(long version, Map<String, Device> devices) {
+		this.version = version;
+		this.devices = Collections.unmodifiableMap(devices != null ? new LinkedHashMap<>(devices) : new LinkedHashMap<String, Device>());
+	}
+
+	private Inventory(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Copies a device of the known types, sharing its fields and properties
+	 * 
+	 * @return The copy or null if the device is an adapter specific subclass
+	 */
+	private static Device copy(Device device) {
+		Device copy;
+		if (device.getClass() == DeviceSpec.class) {
+			DeviceSpec spec = new DeviceSpec();
+			spec.setEnabled(((DeviceSpec) device).isEnabled());
+			spec.setSpecId(((DeviceSpec) device).getSpecId());
+			spec.setPeriod(((DeviceSpec) device).getPeriod());
+			copy = spec;
+		} else if (device.getClass() == Device.class) {
+			copy = new Device();
+		} else {
+			return null;
+		}
+		copy.setId(device.getId());
+		copy.setName(device.getName());
+		copy.setLabel(device.getLabel());
+		copy.setUsable(device.isUsable());
+		copy.setCustomized(device.isCustomized());
+		copy.setProperties(device.getProperties());
+		copy.setFields(device.getFields());
+		return copy;
+	}
+
+	/**
+	 * Creates a snapshot with a changed usable state of a device. The other
+	 * devices are shared with this snapshot.
+	 * 
+	 * @param version
+	 *            The version of the new snapshot.
+	 * @param device
+	 *            The device id.
+	 * @param usable
+	 *            The usable state.
+	 * @return The new snapshot or null if the device is unknown or an
+	 *         adapter specific subclass, which can't be copied.
+	 */
+	Inventory setUsable(long version, String device, boolean usable) {
+		Device d = devices.get(device);
+		if (d == null || (d = copy(d)) == null)
+			return null;
+		d.setUsable(usable);
+		Map<String, Device> copy = new LinkedHashMap<>(devices);
+		copy.put(device, d);
+		Inventory inventory = new Inventory(version);
+		inventory.devices = Collections.unmodifiableMap(copy);
+		return inventory;
+	}
+
+	/**
+	 * Retrieves the version of this snapshot. The version is increased each
+	 * time the devices have changed.
+	 * 
+	 * @return The version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Retrieves the devices as unmodifiable list of key-value-pairs where the
+	 * key is the id of the device.
+	 * 
+	 * @return The devices.
+	 */
+	public Map<String, Device> getDevices() {
+		return devices;
+	}
+}
@@ -0,0 +1,172 @@
+package havis.capture;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * List of listeners with constant time add and remove and allocation free
+ * iteration. Writers are serialized, readers traverse the linked nodes
+ * without locking. A node removed during a traversal still leads to its
+ * successors, so concurrent readers never miss a remaining listener.
+ *
+ * <pre>
+ * for (ListenerList.Node&lt;AdapterListener&gt; node = list.first(); node != null; node = node.next())
+ * 	node.get().valueChanged(source, event);
+ * </pre>
+ *
+ * Hot paths iterate a snapshot array instead, which avoids chasing the nodes.
+ * The snapshot is rebuilt on the first read after a change, so a series of
+ * changes copies the list once rather than once per change.
+ *
+ * @param <T>
+ *            The listener type
+ */
+class ListenerList<T> {
+
+	/**
+	 * Handle of an added listener
+	 */
+	static class Node<T> {
+
+		private final T value;
+		private volatile Node<T> next;
+		private Node<T> prev;
+		private volatile boolean removed;
+
+		private Node(T value) {
+			this.value = value;
+		}
+
+		/**
+		 * @return The listener
+		 */
+		T get() {
+			return value;
+		}
+
+		/**
+		 * @return The next listener or null if this is the last one
+		 */
+		Node<T> next() {
+			Node<T> node = next;
+			while (node != null && node.removed)
+				node = node.next;
+			return node;
+		}
+	}
+
+	private final Node<T> head = new Node<>(null);
+	private Node<T> tail = head;
+	private volatile int size;
+	private final Lock lock = new ReentrantLock();
+	private final static Object[] EMPTY = new Object[0];
+	// current listeners or null if the list has changed since
+	private volatile Object[] snapshot = EMPTY;
+
+	/**
+	 * @return The first listener or null if the list is empty
+	 */
+	Node<T> first() {
+		return head.next();
+	}
+
+	/**
+	 * @return The number of listeners
+	 */
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The current listeners. The array is shared and must not be
+	 *         modified.
+	 */
+	Object[] snapshot() {
+		Object[] snapshot = this.snapshot;
+		if (snapshot != null)
+			return snapshot;
+		lock.lock();
+		try {
+			snapshot = this.snapshot;
+			if (snapshot == null) {
+				snapshot = new Object[size];
+				int i = 0;
+				for (Node<T> node = head.next; node != null; node = node.next)
+					snapshot[i++] = node.value;
+				this.snapshot = snapshot;
+			}
+			return snapshot;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends the listener
+	 *
+	 * @param value
+	 *            The listener
+	 * @return The handle to remove the listener
+	 */
+	Node<T> add(T value) {
+		Node<T> node = new Node<>(value);
+		lock.lock();
+		try {
+			node.prev = tail;
+			tail.next = node;
+			tail = node;
+			size++;
+			snapshot = null;
+		} finally {
+			lock.unlock();
+		}
+		return node;
+	}
+
+	/**
+	 * Removes the listener of the handle
+	 *
+	 * @param node
+	 *            The handle
+	 * @return True if the listener has been removed
+	 */
+	boolean remove(Node<T> node) {
+		lock.lock();
+		try {
+			if (node == null || node.removed || node.prev == null)
+				return false;
+			node.removed = true;
+			node.prev.next = node.next;
+			if (node.next != null)
+				node.next.prev = node.prev;
+			else
+				tail = node.prev;
+			// the next reference is kept for readers at this node
+			node.prev = null;
+			size--;
+			snapshot = null;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the first occurrence of the listener. Prefer removing by handle,
+	 * this traverses the list.
+	 *
+	 * @param value
+	 *            The listener
+	 * @return True if the listener has been removed
+	 */
+	boolean remove(T value) {
+		for (Node<T> node = first(); node != null; node = node.next())
+			if (node.value == value)
+				return remove(node);
+		return false;
+	}
+}
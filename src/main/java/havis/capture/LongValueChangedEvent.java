@@ -0,0 +1,52 @@
+package havis.capture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Represents a value change of a field with a primitive long value. The
+ * value is only boxed if it is requested as object.
+ * 
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class", visible = true)
+public class LongValueChangedEvent extends FieldValueChangedEvent {
+
+	private long longValue;
+	// boxed value, created on first request
+	private volatile Object box;
+
+	public LongValueChangedEvent() {
+	}
+
+	public LongValueChangedEvent(String device, String field, long value) {
+		super(device, field, null);
+		this.longValue = value;
+	}
+
+	@JsonIgnore
+	public long getLongValue() {
+		return longValue;
+	}
+
+	@JsonIgnore
+	public void setLongValue(long value) {
+		this.longValue = value;
+		this.box = null;
+	}
+
+	@Override
+	public Object getValue() {
+		Object box = this.box;
+		if (box == null)
+			this.box = box = Long.valueOf(longValue);
+		return box;
+	}
+
+	@Override
+	public void setValue(Object value) {
+		if (value instanceof Number) {
+			this.longValue = ((Number) value).longValue();
+			this.box = null;
+		}
+	}
+}
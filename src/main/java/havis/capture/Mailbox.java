@@ -0,0 +1,241 @@
+package havis.capture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queues the events of a single handler and delivers them on an executor, so
+ * a slow listener only delays its own events and neither the dispatch lanes
+ * nor other handlers. A busy mailbox hands over its thread after each batch,
+ * so handlers share a bounded executor. Conflated values replace a pending
+ * value of the same field. In batch mode consecutive value events are passed
+ * to a {@link BatchAdapterListener} at once, a batch is delivered when it is
+ * full or its first event waited for the max latency. Usability changes are
+ * delivered ahead of pending values and without delay.
+ */
+class Mailbox implements Runnable {
+
+	private final static Logger log = Logger.getLogger(Mailbox.class.getName());
+
+	private Executor executor;
+	private AdapterListener target;
+	private EventQueue queue;
+	private OverflowPolicy policy;
+	private boolean latest;
+	private ScheduledExecutorService scheduler;
+	private int batchSize;
+	private long batchLatency;
+	private volatile boolean batch;
+	private volatile boolean closed;
+	private AtomicBoolean scheduled = new AtomicBoolean();
+	// true while the delivery waits for a batch to fill
+	private AtomicBoolean delayed = new AtomicBoolean();
+	// true once a dropped event has been logged
+	private AtomicBoolean warned = new AtomicBoolean();
+	private LongAdder delivered = new LongAdder();
+	private AtomicLong maxLag = new AtomicLong();
+
+	/**
+	 * @param executor
+	 *            The executor which delivers the events
+	 * @param scheduler
+	 *            The scheduler which delays the delivery of a batch
+	 * @param target
+	 *            The listener which receives the events
+	 * @param capacity
+	 *            The max number of pending events
+	 * @param policy
+	 *            The policy if the mailbox is full
+	 * @param batchSize
+	 *            The max number of value events of a batch
+	 * @param batchLatency
+	 *            The max time in milliseconds an event waits for a batch to
+	 *            fill
+	 */
+	Mailbox(Executor executor, ScheduledExecutorService scheduler, AdapterListener target, int capacity, OverflowPolicy policy, int batchSize,
+			long batchLatency) {
+		this.executor = executor;
+		this.scheduler = scheduler;
+		this.target = target;
+		this.queue = new EventQueue(capacity, policy);
+		this.policy = policy;
+		this.latest = policy == OverflowPolicy.LATEST;
+		this.batchSize = Math.max(1, batchSize);
+		this.batchLatency = TimeUnit.MILLISECONDS.toNanos(batchLatency);
+	}
+
+	/**
+	 * Sets whether value events are delivered in batches. The target must be
+	 * a {@link BatchAdapterListener}.
+	 */
+	void setBatch(boolean batch) {
+		this.batch = batch && target instanceof BatchAdapterListener;
+	}
+
+	/**
+	 * Queues the event for delivery. If the mailbox is full and the policy
+	 * waits, only dispatch lanes wait, other threads drop the oldest value.
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param event
+	 *            The event
+	 * @param conflate
+	 *            True if the value shall replace a pending value of the same
+	 *            field
+	 */
+	void offer(Adapter source, DeviceStateChangedEvent event, boolean conflate) {
+		if (closed)
+			return;
+		boolean queued = queue.offer(source, event, conflate || latest, Dispatcher.isLane());
+		if (!warned.get() && queue.getDropped() > 0 && warned.compareAndSet(false, true))
+			log.log(Level.WARNING, "Handler lags behind, events are dropped by policy {0}", policy);
+		if (queued) {
+			try {
+				if (scheduled.compareAndSet(false, true))
+					executor.execute(this);
+				else if ((queue.size() >= batchSize || !(event instanceof FieldValueChangedEvent)) && delayed.compareAndSet(true, false))
+					// the batch is full or a usability change is pending,
+					// deliver without waiting
+					executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				// disposed, the pending events are not delivered
+				scheduled.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Discards the pending events, later events are ignored
+	 */
+	void close() {
+		closed = true;
+		queue.clear();
+	}
+
+	/**
+	 * Delays the delivery until the batch is full or the first event waited
+	 * for the max latency
+	 * 
+	 * @return True if the delivery has been delayed
+	 */
+	private boolean delay() {
+		if (!batch || scheduler == null || batchLatency <= 0 || queue.size() >= batchSize || queue.hasControl())
+			return false;
+		long remaining = batchLatency - queue.getLag();
+		if (remaining <= 0)
+			return false;
+		delayed.set(true);
+		try {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (delayed.compareAndSet(true, false))
+						executor.execute(Mailbox.this);
+				}
+			}, remaining, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			delayed.set(false);
+			return false;
+		}
+		// the batch may have been filled before the flag was set
+		return queue.size() < batchSize && !queue.hasControl() || !delayed.compareAndSet(true, false);
+	}
+
+	private void deliver(Adapter source, List<FieldValueChangedEvent> events) {
+		try {
+			((BatchAdapterListener) target).valuesChanged(source, events);
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "Failed to deliver events", e);
+		}
+		delivered.add(events.size());
+	}
+
+	@Override
+	public void run() {
+		if (delay())
+			return;
+		List<FieldValueChangedEvent> events = null;
+		Adapter source = null;
+		EventQueue.Entry entry = null;
+		for (int count = 0;; count++) {
+			if (closed) {
+				queue.release(entry);
+				scheduled.set(false);
+				return;
+			}
+			if (count == batchSize) {
+				if (events != null)
+					deliver(source, events);
+				// hand over the thread to other handlers
+				queue.release(entry);
+				entry = null;
+				try {
+					executor.execute(this);
+					return;
+				} catch (RejectedExecutionException e) {
+					events = null;
+				}
+			}
+			entry = queue.poll(entry);
+			if (entry == null) {
+				if (events != null) {
+					deliver(source, events);
+					events = null;
+				}
+				scheduled.set(false);
+				// an event may have been queued before the flag was reset
+				if (queue.size() == 0 || !scheduled.compareAndSet(false, true))
+					return;
+				continue;
+			}
+			long lag = System.nanoTime() - entry.time;
+			if (lag > maxLag.get())
+				maxLag.set(lag);
+			if (batch && entry.event instanceof FieldValueChangedEvent) {
+				if (events != null && entry.source != source) {
+					deliver(source, events);
+					events = null;
+				}
+				if (events == null)
+					events = new ArrayList<>(batchSize);
+				source = entry.source;
+				events.add((FieldValueChangedEvent) entry.event);
+				if (events.size() >= batchSize) {
+					deliver(source, events);
+					events = null;
+				}
+				continue;
+			}
+			// pass the pending batch before the usability change, values
+			// still queued are passed after it
+			if (events != null) {
+				deliver(source, events);
+				events = null;
+			}
+			try {
+				entry.deliver(target);
+			} catch (RuntimeException e) {
+				log.log(Level.WARNING, "Failed to deliver event", e);
+			}
+			delivered.increment();
+		}
+	}
+
+	/**
+	 * @return The current metrics of the mailbox
+	 */
+	MailboxMetrics getMetrics() {
+		return new MailboxMetrics(queue.size(), delivered.sum(), queue.getDropped(), queue.getCoalesced(), TimeUnit.NANOSECONDS.toMillis(queue.getLag()),
+				TimeUnit.NANOSECONDS.toMillis(maxLag.get()));
+	}
+}
@@ -0,0 +1,70 @@
+package havis.capture;
+
+/**
+ * Represents the delivery state of the events of a single handler.
+ * 
+ */
+public class MailboxMetrics {
+
+	private int pending;
+	private long delivered;
+	private long dropped;
+	private long coalesced;
+	private long lag;
+	private long maxLag;
+
+	/**
+	 * Creates a new instance of MailboxMetrics.
+	 */
+	public MailboxMetrics() {
+	}
+
+	/**
+	 * Creates a new instance of MailboxMetrics.
+	 * 
+	 * @param pending
+	 *            The number of pending events.
+	 * @param delivered
+	 *            The number of delivered events.
+	 * @param dropped
+	 *            The number of dropped events.
+	 * @param coalesced
+	 *            The number of replaced pending values.
+	 * @param lag
+	 *            The age of the oldest pending event in milliseconds.
+	 * @param maxLag
+	 *            The maximum time in milliseconds an event was pending.
+	 */
+	public MailboxMetrics(int pending, long delivered, long dropped, long coalesced, long lag, long maxLag) {
+		this.pending = pending;
+		this.delivered = delivered;
+		this.dropped = dropped;
+		this.coalesced = coalesced;
+		this.lag = lag;
+		this.maxLag = maxLag;
+	}
+
+	public int getPending() {
+		return pending;
+	}
+
+	public long getDelivered() {
+		return delivered;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	public long getLag() {
+		return lag;
+	}
+
+	public long getMaxLag() {
+		return maxLag;
+	}
+}
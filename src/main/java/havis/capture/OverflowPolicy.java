@@ -0,0 +1,24 @@
+package havis.capture;
+
+/**
+ * Defines how events are handled if a dispatch queue is full
+ */
+public enum OverflowPolicy {
+	/**
+	 * Blocks the adapter thread until the queue has space again
+	 */
+	BLOCK,
+	/**
+	 * Drops the oldest queued event
+	 */
+	DROP_OLDEST,
+	/**
+	 * Drops the new event
+	 */
+	DROP_NEWEST,
+	/**
+	 * Replaces a queued value of the same field by the new value, blocks if
+	 * the queue is full of distinct fields
+	 */
+	LATEST
+}
@@ -0,0 +1,44 @@
+package havis.capture;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Signals that some of several fields could not be read. Contains the values
+ * of the fields which have been read and the failure of each other field, so
+ * callers don't need to read the fields again.
+ */
+public class PartialValuesException extends AdapterException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Map<FieldRef, Object> values;
+	private final Map<FieldRef, AdapterException> failures;
+
+	/**
+	 * @param values
+	 *            The values of the fields which have been read
+	 * @param failures
+	 *            The failures of the fields which could not be read, must not
+	 *            be empty
+	 */
+	public PartialValuesException(Map<FieldRef, Object> values, Map<FieldRef, AdapterException> failures) {
+		super("Failed to read " + failures.size() + " of " + (values.size() + failures.size()) + " fields", failures.values().iterator().next());
+		this.values = Collections.unmodifiableMap(values);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * @return The values of the fields which have been read
+	 */
+	public Map<FieldRef, Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * @return The failures of the fields which could not be read
+	 */
+	public Map<FieldRef, AdapterException> getFailures() {
+		return failures;
+	}
+}
@@ -0,0 +1,216 @@
+package havis.capture;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Index of subscriptions with device and field patterns. A pattern is either
+ * a name, a prefix followed by '*' or a single '*' matching all names. The
+ * patterns of each component are kept in a trie, so matching an event costs
+ * the length of its device and field names regardless of the number of
+ * patterns. Lookups run without locking, modifications are serialized.
+ */
+class PatternIndex {
+
+	private final static String WILDCARD = "*";
+
+	private static class Node<T> {
+		private final Map<Character, Node<T>> children = new ConcurrentHashMap<>();
+		// value of the pattern naming this node
+		private volatile T exact;
+		// value of the prefix pattern ending at this node
+		private volatile T prefix;
+	}
+
+	private static class Fields {
+		private final Node<ListenerList<AdapterListener>> root = new Node<>();
+		// capsules with their number of subscriptions
+		private final Map<AdapterListener, Integer> capsules = new ConcurrentHashMap<>();
+	}
+
+	private final Node<Fields> devices = new Node<>();
+	private final Lock lock = new ReentrantLock();
+	private volatile int size;
+
+	/**
+	 * @param pattern
+	 *            The pattern
+	 * @return True if the value contains a wildcard
+	 */
+	static boolean isPattern(String pattern) {
+		return pattern != null && pattern.endsWith(WILDCARD);
+	}
+
+	/**
+	 * @param pattern
+	 *            The pattern
+	 * @param name
+	 *            The device or field name
+	 * @return True if the name matches the pattern
+	 */
+	static boolean matches(String pattern, String name) {
+		if (pattern == null || name == null)
+			return false;
+		if (isPattern(pattern))
+			return name.startsWith(pattern.substring(0, pattern.length() - 1));
+		return pattern.equals(name);
+	}
+
+	private static <T> Node<T> find(Node<T> node, String pattern, boolean create) {
+		int length = isPattern(pattern) ? pattern.length() - 1 : pattern.length();
+		for (int i = 0; i < length && node != null; i++) {
+			Character c = Character.valueOf(pattern.charAt(i));
+			Node<T> child = node.children.get(c);
+			if (child == null && create)
+				node.children.put(c, child = new Node<>());
+			node = child;
+		}
+		return node;
+	}
+
+	private static <T> T get(Node<T> node, String pattern) {
+		return isPattern(pattern) ? node.prefix : node.exact;
+	}
+
+	private static <T> void set(Node<T> node, String pattern, T value) {
+		if (isPattern(pattern))
+			node.prefix = value;
+		else
+			node.exact = value;
+	}
+
+	/**
+	 * Adds a subscription
+	 *
+	 * @param device
+	 *            The device pattern
+	 * @param field
+	 *            The field pattern
+	 * @param listener
+	 *            The listener receiving the value changes
+	 * @param capsule
+	 *            The capsule receiving the usability changes
+	 */
+	void add(String device, String field, AdapterListener listener, AdapterListener capsule) {
+		lock.lock();
+		try {
+			Node<Fields> d = find(devices, device, true);
+			Fields fields = get(d, device);
+			if (fields == null)
+				set(d, device, fields = new Fields());
+			Node<ListenerList<AdapterListener>> f = find(fields.root, field, true);
+			ListenerList<AdapterListener> listeners = get(f, field);
+			if (listeners == null)
+				set(f, field, listeners = new ListenerList<>());
+			listeners.add(listener);
+			Integer count = fields.capsules.get(capsule);
+			fields.capsules.put(capsule, count == null ? 1 : count + 1);
+			size++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a subscription. Emptied nodes are kept for later subscriptions.
+	 *
+	 * @return True if the subscription has been removed
+	 */
+	boolean remove(String device, String field, AdapterListener listener, AdapterListener capsule) {
+		lock.lock();
+		try {
+			Node<Fields> d = find(devices, device, false);
+			Fields fields = d != null ? get(d, device) : null;
+			if (fields == null)
+				return false;
+			Node<ListenerList<AdapterListener>> f = find(fields.root, field, false);
+			ListenerList<AdapterListener> listeners = f != null ? get(f, field) : null;
+			if (listeners == null || !listeners.remove(listener))
+				return false;
+			if (listeners.isEmpty())
+				set(f, field, null);
+			Integer count = fields.capsules.get(capsule);
+			if (count != null && count > 1)
+				fields.capsules.put(capsule, count - 1);
+			else
+				fields.capsules.remove(capsule);
+			if (fields.capsules.isEmpty())
+				set(d, device, null);
+			size--;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Passes the value change to the listeners of all matching patterns
+	 */
+	void valueChanged(Adapter source, FieldValueChangedEvent event) {
+		String device = event.getDevice(), field = event.getField();
+		if (size == 0 || device == null || field == null)
+			return;
+		Node<Fields> node = devices;
+		int i = 0;
+		while (node != null) {
+			Fields fields = node.prefix;
+			if (fields != null)
+				valueChanged(fields.root, field, source, event);
+			if (i == device.length()) {
+				fields = node.exact;
+				if (fields != null)
+					valueChanged(fields.root, field, source, event);
+				break;
+			}
+			node = node.children.get(Character.valueOf(device.charAt(i++)));
+		}
+	}
+
+	private static void valueChanged(Node<ListenerList<AdapterListener>> node, String field, Adapter source, FieldValueChangedEvent event) {
+		int i = 0;
+		while (node != null) {
+			ListenerList<AdapterListener> listeners = node.prefix;
+			if (listeners != null)
+				for (Object listener : listeners.snapshot())
+					((AdapterListener) listener).valueChanged(source, event);
+			if (i == field.length()) {
+				listeners = node.exact;
+				if (listeners != null)
+					for (Object listener : listeners.snapshot())
+						((AdapterListener) listener).valueChanged(source, event);
+				break;
+			}
+			node = node.children.get(Character.valueOf(field.charAt(i++)));
+		}
+	}
+
+	/**
+	 * Adds the capsules of all patterns matching the device
+	 *
+	 * @param device
+	 *            The device id
+	 * @param capsules
+	 *            The collection to add the capsules to
+	 */
+	void collect(String device, Collection<AdapterListener> capsules) {
+		if (size == 0 || device == null)
+			return;
+		Node<Fields> node = devices;
+		int i = 0;
+		while (node != null) {
+			Fields fields = node.prefix;
+			if (fields != null)
+				capsules.addAll(fields.capsules.keySet());
+			if (i == device.length()) {
+				fields = node.exact;
+				if (fields != null)
+					capsules.addAll(fields.capsules.keySet());
+				break;
+			}
+			node = node.children.get(Character.valueOf(device.charAt(i++)));
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package havis.capture;
+
+/**
+ * PrimitiveAdapterListener extends the callback interface by value changes
+ * with primitive values, which are passed without boxing. By default they are
+ * passed to the generic value callback, which boxes the value on request.
+ *
+ */
+public interface PrimitiveAdapterListener extends AdapterListener {
+
+    /**
+	 * Signals that the double value of a field within a device has changed or was captured.
+	 *
+	 * @param source    Instance of the Adapter that send the event.
+     * @param event     The event containing all needed information.
+	 */
+	default void valueChanged(Adapter source, DoubleValueChangedEvent event) {
+		valueChanged(source, (FieldValueChangedEvent) event);
+	}
+
+    /**
+	 * Signals that the long value of a field within a device has changed or was captured.
+	 *
+	 * @param source    Instance of the Adapter that send the event.
+     * @param event     The event containing all needed information.
+	 */
+	default void valueChanged(Adapter source, LongValueChangedEvent event) {
+		valueChanged(source, (FieldValueChangedEvent) event);
+	}
+
+    /**
+	 * Signals that the boolean value of a field within a device has changed or was captured.
+	 *
+	 * @param source    Instance of the Adapter that send the event.
+     * @param event     The event containing all needed information.
+	 */
+	default void valueChanged(Adapter source, BooleanValueChangedEvent event) {
+		valueChanged(source, (FieldValueChangedEvent) event);
+	}
+}
@@ -0,0 +1,177 @@
+package havis.capture;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring of adapter events with multiple producers and a single
+ * consumer in the style of the LMAX Disruptor. The slots are allocated once
+ * and reused. A producer claims the next sequence, fills its slot and
+ * publishes it by writing the sequence to the slot. The consumer reads the
+ * published sequences in order and waits for new ones by the wait strategy.
+ * Producers wait while the ring is full.
+ */
+class RingBuffer {
+
+	// number of idle rounds spent spinning and yielding before parking
+	private final static int SPINS = 100;
+	private final static long PARK = 100_000;
+
+	private static class Slot {
+		private Adapter source;
+		private int handle;
+		private DeviceStateChangedEvent event;
+		// sequence of the event in the slot, written last to publish it
+		private volatile long sequence = -1;
+	}
+
+	private final Slot[] slots;
+	private final int mask;
+	private final WaitStrategy strategy;
+	// last claimed sequence
+	private final AtomicLong claimed = new AtomicLong(-1);
+	// last consumed sequence, slots up to this sequence may be reused
+	private volatile long consumed = -1;
+	private volatile boolean waiting;
+	private volatile boolean closed;
+	private final Lock lock = new ReentrantLock();
+	private final Condition published = lock.newCondition();
+
+	/**
+	 * @param capacity
+	 *            The capacity of the ring, rounded up to a power of two
+	 * @param strategy
+	 *            The strategy of the consumer to wait for new events
+	 */
+	RingBuffer(int capacity, WaitStrategy strategy) {
+		int size = capacity > 1 ? Integer.highestOneBit(capacity - 1) << 1 : 1;
+		this.slots = new Slot[size];
+		for (int i = 0; i < size; i++)
+			slots[i] = new Slot();
+		this.mask = size - 1;
+		this.strategy = strategy;
+	}
+
+	private static void idle(WaitStrategy strategy, int round) {
+		switch (strategy) {
+		case BUSY_SPIN:
+			break;
+		case YIELDING:
+			if (round >= SPINS)
+				Thread.yield();
+			break;
+		default:
+			if (round >= 2 * SPINS)
+				LockSupport.parkNanos(PARK);
+			else if (round >= SPINS)
+				Thread.yield();
+		}
+	}
+
+	/**
+	 * Publishes the event, see {@link #publish(Adapter, int, DeviceStateChangedEvent)}
+	 */
+	boolean publish(Adapter source, DeviceStateChangedEvent event) {
+		return publish(source, -1, event);
+	}
+
+	/**
+	 * Publishes the event, waits while the ring is full. A claimed sequence
+	 * is always published, so interrupts don't stop waiting.
+	 * 
+	 * @param source
+	 *            The adapter which raised the event
+	 * @param handle
+	 *            The handle of the field or -1
+	 * @param event
+	 *            The event
+	 * @return True if the event has been published, false if the ring is
+	 *         closed
+	 */
+	boolean publish(Adapter source, int handle, DeviceStateChangedEvent event) {
+		if (closed)
+			return false;
+		long sequence = claimed.incrementAndGet();
+		long wrap = sequence - slots.length;
+		for (int round = 0; wrap > consumed; round++) {
+			if (closed)
+				return false;
+			idle(strategy == WaitStrategy.BLOCKING ? WaitStrategy.SLEEPING : strategy, round);
+		}
+		Slot slot = slots[(int) sequence & mask];
+		slot.source = source;
+		slot.handle = handle;
+		slot.event = event;
+		slot.sequence = sequence;
+		if (waiting) {
+			lock.lock();
+			try {
+				published.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+		return true;
+	}
+
+	private void await(Slot slot, long sequence) throws InterruptedException {
+		if (strategy == WaitStrategy.BLOCKING) {
+			lock.lock();
+			try {
+				// producers check the flag after publishing
+				waiting = true;
+				while (slot.sequence != sequence)
+					published.await();
+			} finally {
+				waiting = false;
+				lock.unlock();
+			}
+		} else {
+			for (int round = 0; slot.sequence != sequence; round++) {
+				if (Thread.interrupted())
+					throw new InterruptedException();
+				idle(strategy, round);
+			}
+		}
+	}
+
+	/**
+	 * Waits for the next event and passes it to the listener. Must only be
+	 * called by the consumer thread.
+	 * 
+	 * @param target
+	 *            The listener
+	 * @throws InterruptedException
+	 *             If the thread has been interrupted while waiting
+	 */
+	void consume(AdapterListener target) throws InterruptedException {
+		long sequence = consumed + 1;
+		Slot slot = slots[(int) sequence & mask];
+		if (slot.sequence != sequence)
+			await(slot, sequence);
+		Adapter source = slot.source;
+		int handle = slot.handle;
+		DeviceStateChangedEvent event = slot.event;
+		slot.source = null;
+		slot.event = null;
+		consumed = sequence;
+		EventQueue.deliver(target, source, handle, event);
+	}
+
+	/**
+	 * @return The number of published events not consumed yet
+	 */
+	int size() {
+		return (int) Math.max(0, claimed.get() - consumed);
+	}
+
+	/**
+	 * Releases waiting producers, further events are rejected
+	 */
+	void close() {
+		closed = true;
+	}
+}
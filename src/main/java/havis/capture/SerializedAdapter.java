@@ -0,0 +1,15 @@
+package havis.capture;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an adapter which must not be called concurrently at all. By default
+ * the adapter manager only serializes calls for the same device.
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SerializedAdapter {
+}
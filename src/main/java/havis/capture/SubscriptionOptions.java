@@ -0,0 +1,186 @@
+package havis.capture;
+
+/**
+ * Represents the options of a field subscription.
+ * 
+ */
+public class SubscriptionOptions {
+
+	private boolean conflate;
+	private long minInterval;
+	private boolean keepLatest;
+	private double deadband;
+	private boolean percentDeadband;
+	private long samplingInterval;
+	private int queueSize;
+
+	/**
+	 * Creates a new instance of SubscriptionOptions.
+	 */
+	public SubscriptionOptions() {
+	}
+
+	/**
+	 * Retrieves whether pending values of a field are replaced by newer
+	 * values, so a slow listener only receives the latest value.
+	 * 
+	 * @return True if pending values are conflated.
+	 */
+	public boolean isConflate() {
+		return conflate;
+	}
+
+	/**
+	 * Sets whether pending values of a field are replaced by newer values.
+	 * 
+	 * @param conflate
+	 *            True to conflate pending values.
+	 */
+	public void setConflate(boolean conflate) {
+		this.conflate = conflate;
+	}
+
+	/**
+	 * Retrieves the min interval between two values of a field in
+	 * milliseconds. Zero passes all values.
+	 * 
+	 * @return The min interval in milliseconds.
+	 */
+	public long getMinInterval() {
+		return minInterval;
+	}
+
+	/**
+	 * Sets the min interval between two values of a field in milliseconds.
+	 * 
+	 * @param minInterval
+	 *            The min interval in milliseconds, zero to pass all values.
+	 */
+	public void setMinInterval(long minInterval) {
+		this.minInterval = minInterval;
+	}
+
+	/**
+	 * Retrieves the max number of values of a field per second.
+	 * 
+	 * @return The max rate or zero if not limited.
+	 */
+	public double getMaxRate() {
+		return minInterval > 0 ? 1000.0 / minInterval : 0;
+	}
+
+	/**
+	 * Sets the max number of values of a field per second. This is a
+	 * shorthand for the min interval.
+	 * 
+	 * @param maxRate
+	 *            The max rate, zero to pass all values.
+	 */
+	public void setMaxRate(double maxRate) {
+		this.minInterval = maxRate > 0 ? Math.max(1, Math.round(1000 / maxRate)) : 0;
+	}
+
+	/**
+	 * Retrieves whether the latest value of an interval is passed at its end
+	 * instead of passing the first value and dropping the others.
+	 * 
+	 * @return True if the latest value is kept.
+	 */
+	public boolean isKeepLatest() {
+		return keepLatest;
+	}
+
+	/**
+	 * Sets whether the latest value of an interval is passed at its end.
+	 * 
+	 * @param keepLatest
+	 *            True to keep the latest value, false to keep the first.
+	 */
+	public void setKeepLatest(boolean keepLatest) {
+		this.keepLatest = keepLatest;
+	}
+
+	/**
+	 * Retrieves the deadband of numeric values. A value is only passed if it
+	 * differs from the last passed value by more than the deadband. Zero
+	 * passes all values.
+	 * 
+	 * @return The deadband.
+	 */
+	public double getDeadband() {
+		return deadband;
+	}
+
+	/**
+	 * Sets the deadband of numeric values.
+	 * 
+	 * @param deadband
+	 *            The deadband, zero to pass all values.
+	 */
+	public void setDeadband(double deadband) {
+		this.deadband = deadband;
+	}
+
+	/**
+	 * Retrieves whether the deadband is a percentage of the last passed value
+	 * instead of an absolute difference.
+	 * 
+	 * @return True if the deadband is a percentage.
+	 */
+	public boolean isPercentDeadband() {
+		return percentDeadband;
+	}
+
+	/**
+	 * Sets whether the deadband is a percentage of the last passed value.
+	 * 
+	 * @param percentDeadband
+	 *            True if the deadband is a percentage.
+	 */
+	public void setPercentDeadband(boolean percentDeadband) {
+		this.percentDeadband = percentDeadband;
+	}
+
+	/**
+	 * Retrieves the interval in milliseconds in which the adapter samples the
+	 * field. Zero uses the default of the adapter. Adapters without the
+	 * OPTIONS capability are limited by the min interval instead.
+	 * 
+	 * @return The sampling interval in milliseconds.
+	 */
+	public long getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	/**
+	 * Sets the interval in milliseconds in which the adapter samples the
+	 * field.
+	 * 
+	 * @param samplingInterval
+	 *            The sampling interval in milliseconds, zero for the default.
+	 */
+	public void setSamplingInterval(long samplingInterval) {
+		this.samplingInterval = samplingInterval;
+	}
+
+	/**
+	 * Retrieves the number of samples the adapter queues between two
+	 * notifications. Zero uses the default of the adapter.
+	 * 
+	 * @return The queue size.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Sets the number of samples the adapter queues between two
+	 * notifications.
+	 * 
+	 * @param queueSize
+	 *            The queue size, zero for the default.
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+}
@@ -0,0 +1,125 @@
+package havis.capture;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the values of each field passed to the target to one per interval.
+ * Either the first value of an interval is passed and the others are
+ * dropped, or the latest value is passed at the end of the interval.
+ * Usability changes are passed unchanged.
+ */
+class Throttle implements AdapterListener {
+
+	private static class Window {
+
+		private boolean delivered;
+		private long last;
+		private boolean scheduled;
+		private Adapter source;
+		private FieldValueChangedEvent pending;
+	}
+
+	private AdapterListener target;
+	private ScheduledExecutorService scheduler;
+	private long interval;
+	private boolean latest;
+	private FieldMap<Window> windows = new FieldMap<>();
+	private volatile boolean closed;
+
+	/**
+	 * @param target
+	 *            The listener which receives the events
+	 * @param scheduler
+	 *            The scheduler which passes the latest values
+	 * @param interval
+	 *            The min interval in milliseconds
+	 * @param latest
+	 *            True to pass the latest value of an interval, false to pass
+	 *            the first
+	 */
+	Throttle(AdapterListener target, ScheduledExecutorService scheduler, long interval, boolean latest) {
+		this.target = target;
+		this.scheduler = scheduler;
+		this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+		this.latest = latest;
+	}
+
+	/**
+	 * Drops all pending values
+	 */
+	void close() {
+		closed = true;
+		windows.clear();
+	}
+
+	@Override
+	public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+		if (closed)
+			return;
+		Window window = windows.get(event.getDevice(), event.getField());
+		if (window == null) {
+			Window current = windows.putIfAbsent(event.getDevice(), event.getField(), window = new Window());
+			if (current != null)
+				window = current;
+		}
+		long now = System.nanoTime();
+		synchronized (window) {
+			if (!window.delivered || now - window.last >= interval) {
+				window.delivered = true;
+				window.last = now;
+				window.pending = null;
+			} else {
+				if (latest) {
+					window.source = source;
+					window.pending = event;
+					if (!window.scheduled)
+						window.scheduled = schedule(window, window.last + interval - now);
+				}
+				return;
+			}
+		}
+		target.valueChanged(source, event);
+	}
+
+	private boolean schedule(final Window window, long delay) {
+		try {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					flush(window);
+				}
+			}, delay, TimeUnit.NANOSECONDS);
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	private void flush(Window window) {
+		Adapter source;
+		FieldValueChangedEvent event;
+		synchronized (window) {
+			window.scheduled = false;
+			source = window.source;
+			event = window.pending;
+			window.source = null;
+			window.pending = null;
+			if (event == null || closed)
+				return;
+			window.last = System.nanoTime();
+		}
+		target.valueChanged(source, event);
+	}
+
+	@Override
+	public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+		target.usabilityChanged(source, event);
+	}
+
+	@Override
+	public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+		target.usabilityChanged(source, event);
+	}
+}
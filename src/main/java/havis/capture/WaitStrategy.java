@@ -0,0 +1,24 @@
+package havis.capture;
+
+/**
+ * Defines how the consumer of a dispatch ring waits for new events
+ */
+public enum WaitStrategy {
+	/**
+	 * Waits on a condition until a producer signals a new event, lowest CPU
+	 * usage with the highest latency
+	 */
+	BLOCKING,
+	/**
+	 * Spins shortly and parks for a moment afterwards
+	 */
+	SLEEPING,
+	/**
+	 * Spins shortly and yields the thread afterwards
+	 */
+	YIELDING,
+	/**
+	 * Spins permanently, lowest latency while occupying a core
+	 */
+	BUSY_SPIN
+}
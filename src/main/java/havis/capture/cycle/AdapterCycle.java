@@ -1,5 +1,7 @@
 package havis.capture.cycle;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
@@ -9,10 +11,11 @@ import java.util.logging.Logger;
 import havis.capture.Adapter;
 import havis.capture.AdapterException;
 import havis.capture.AdapterHandler;
-import havis.capture.AdapterListener;
+import havis.capture.BatchAdapterListener;
 import havis.capture.Device;
 import havis.capture.DeviceUsabilityChangedEvent;
 import havis.capture.Field;
+import havis.capture.FieldRef;
 import havis.capture.FieldUsabilityChangedEvent;
 import havis.capture.FieldValueChangedEvent;
 import havis.capture.poll.PollListener;
@@ -45,7 +48,7 @@ public class AdapterCycle extends CommonCycle<CycleSpec, AdapterNotify, ListCycl
 	private PollService pollService;
 	private ReentrantLock lock = new ReentrantLock();
 
-	private boolean enabled;
+	private volatile boolean enabled;
 
 	public AdapterCycle(AdapterHandler adapterHandler, CycleSpec spec, SubscriberManager subscriberManager)
 			throws ImplementationException, ValidationException {
@@ -196,7 +199,7 @@ public class AdapterCycle extends CommonCycle<CycleSpec, AdapterNotify, ListCycl
 
 	private void setListener() throws ImplementationException {
 		try {
-			adapterHandler.setListener(new AdapterListener() {
+			adapterHandler.setListener(new BatchAdapterListener() {
 
 				@Override
 				public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
@@ -210,12 +213,27 @@ public class AdapterCycle extends CommonCycle<CycleSpec, AdapterNotify, ListCycl
 
 				@Override
 				public void valueChanged(Adapter source, FieldValueChangedEvent event) {
-					if (event.getDevice() == null || event.getField() == null)
+					if (!enabled || event.getDevice() == null || event.getField() == null)
 						return;
 					// notify value
-					AdapterNotify adapterNotify = new AdapterNotify(event.getDevice(), event.getField(), event.getValue());
+					AdapterNotify adapterNotify = new AdapterNotify(event);
 					AdapterCycle.this.notify(source != null ? source.getClass().getName() : null, adapterNotify);
 				}
+
+				@Override
+				public void valuesChanged(Adapter source, List<FieldValueChangedEvent> events) {
+					// checked once per batch, the cycle lock must not be taken
+					// here as disable holds it while removing this listener
+					if (!enabled)
+						return;
+					String name = source != null ? source.getClass().getName() : null;
+					for (FieldValueChangedEvent event : events) {
+						if (event.getDevice() == null || event.getField() == null)
+							continue;
+						// notify value
+						AdapterCycle.this.notify(name, new AdapterNotify(event));
+					}
+				}
 			});
 		} catch (AdapterException e) {
 			throw new ImplementationException("Failed to set listener", e);
@@ -233,24 +251,20 @@ public class AdapterCycle extends CommonCycle<CycleSpec, AdapterNotify, ListCycl
 
 			pollService = new PollService();
 
-			// subscribe to fields
-			for (Map.Entry<String, Set<String>> entry : configuration.getFieldSubscriptions().entrySet()) {
-				for (String field : entry.getValue()) {
-					try {
-						addFieldSubscription(entry.getKey(), field);
-					} catch (Exception e) {
-						log.log(Level.WARNING, "Failed to subscribe " + entry.getKey() + " " + field + ":", e);
-						// remove subscriptions
-						for (Map.Entry<String, Set<String>> ent : configuration.getFieldSubscriptions().entrySet()) {
-							for (String f : ent.getValue()) {
-								try {
-									adapterHandler.unsubscribe(ent.getKey(), f);
-								} catch (AdapterException ex) {
-									log.log(Level.WARNING, "Failed to unsubscribe from field.", ex);
-								}
-							}
-						}
-					}
+			// subscribe to all fields at once
+			List<FieldRef> fields = getFields();
+			try {
+				Map<String, Device> devices = adapterHandler.getDevices();
+				for (FieldRef field : fields)
+					setPeriod(devices, field.getDevice(), field.getField());
+				adapterHandler.subscribe(fields);
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Failed to subscribe fields:", e);
+				// remove subscriptions
+				try {
+					adapterHandler.unsubscribe(fields);
+				} catch (AdapterException ex) {
+					log.log(Level.WARNING, "Failed to unsubscribe from fields.", ex);
 				}
 			}
 
@@ -291,14 +305,10 @@ public class AdapterCycle extends CommonCycle<CycleSpec, AdapterNotify, ListCycl
 			enabled = false;
 			if (adapterHandler != null) {
 				adapterHandler.setListener(null);
-				for (Map.Entry<String, Set<String>> entry : configuration.getFieldSubscriptions().entrySet()) {
-					for (String field : entry.getValue()) {
-						try {
-							adapterHandler.unsubscribe(entry.getKey(), field);
-						} catch (AdapterException e) {
-							log.log(Level.WARNING, "Failed to unsubscribe from field.", e);
-						}
-					}
+				try {
+					adapterHandler.unsubscribe(getFields());
+				} catch (AdapterException e) {
+					log.log(Level.WARNING, "Failed to unsubscribe from fields.", e);
 				}
 			}
 			pollService.stop();
@@ -311,25 +321,44 @@ public class AdapterCycle extends CommonCycle<CycleSpec, AdapterNotify, ListCycl
 		}
 	}
 
+	/**
+	 * @return The configured fields
+	 */
+	private List<FieldRef> getFields() {
+		List<FieldRef> fields = new ArrayList<>();
+		for (Map.Entry<String, Set<String>> entry : configuration.getFieldSubscriptions().entrySet())
+			for (String field : entry.getValue())
+				if (entry.getKey() != null && field != null)
+					fields.add(new FieldRef(entry.getKey(), field));
+		return fields;
+	}
+
+	/**
+	 * Polls the field if a polling interval is specified by its properties
+	 */
+	private void setPeriod(Map<String, Device> devices, String device, String field) {
+		Device d = devices != null ? devices.get(device) : null;
+		if (d != null && d.getFields() != null) {
+			Field f = d.getFields().get(field);
+			if (f != null) {
+				Map<String, String> props = f.getProperties();
+				if (props != null) {
+					String stringPeriod = props.get(PERIOD);
+					if (stringPeriod != null) {
+						long period = Long.valueOf(stringPeriod);
+						pollService.setField(device, field, period);
+					}
+				}
+			}
+		}
+	}
+
 	public void addFieldSubscription(String device, String field) throws AdapterException {
 		if (device == null || field == null)
 			return;
 		configuration.addFieldSubscription(device, field);
 		if (enabled) {
-			Device d = adapterHandler.getDevices().get(device);
-			if (d != null && d.getFields() != null) {
-				Field f = d.getFields().get(field);
-				if (f != null) {
-					Map<String, String> props = f.getProperties();
-					if (props != null) {
-						String stringPeriod = props.get(PERIOD);
-						if (stringPeriod != null) {
-							long period = Long.valueOf(stringPeriod);
-							pollService.setField(device, field, period);
-						}
-					}
-				}
-			}
+			setPeriod(adapterHandler.getDevices(), device, field);
 			adapterHandler.subscribe(device, field);
 		}
 	}
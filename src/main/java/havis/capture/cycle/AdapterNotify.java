@@ -1,5 +1,7 @@
 package havis.capture.cycle;
 
+import havis.capture.FieldValueChangedEvent;
+
 import java.util.Date;
 
 public class AdapterNotify {
@@ -7,6 +9,7 @@ public class AdapterNotify {
 	private String device;
 	private String field;
 	private Object value;
+	private FieldValueChangedEvent event;
 
 	public AdapterNotify(String device, String field, Object value) {
 		this.date = new Date();
@@ -15,6 +18,20 @@ public class AdapterNotify {
 		this.value = value;
 	}
 
+	/**
+	 * Creates a notification of the value event. Primitive values are boxed
+	 * when the value is requested.
+	 * 
+	 * @param event
+	 *            The value event
+	 */
+	public AdapterNotify(FieldValueChangedEvent event) {
+		this.date = new Date();
+		this.device = event.getDevice();
+		this.field = event.getField();
+		this.event = event;
+	}
+
 	public Date getDate() {
 		return date;
 	}
@@ -28,6 +45,6 @@ public class AdapterNotify {
 	}
 
 	public Object getValue() {
-		return value;
+		return event != null ? event.getValue() : value;
 	}
 }
@@ -5,6 +5,7 @@ import havis.capture.AdapterHandler;
 import havis.capture.AdapterName;
 import havis.capture.AdapterServiceClass;
 import havis.capture.AdapterManager;
+import havis.capture.Environment;
 import havis.capture.rest.AdapterService;
 import havis.capture.rest.RESTApplication;
 
@@ -35,6 +36,7 @@ public class Activator implements BundleActivator {
 	private List<ServiceRegistration<AdapterHandler>> handlers = new ArrayList<>();
 	private List<ServiceRegistration<Application>> apps = new ArrayList<>();
 	private List<AdapterService> services = new ArrayList<>();
+	private List<AdapterManager> managers = new ArrayList<>();
 
 	@Override
 	public void start(BundleContext context) throws Exception {
@@ -49,6 +51,9 @@ public class Activator implements BundleActivator {
 				AdapterName name = adapter.getClass().getAnnotation(AdapterName.class);
 				if (name != null) {
 					final AdapterManager manager = new AdapterManager(adapter);
+					managers.add(manager);
+					if (Environment.ADAPTER_PREWARM)
+						manager.prewarm();
 
 					Dictionary<String, String> properties = new Hashtable<>();
 					properties.put(NAME, name.value());
@@ -99,5 +104,9 @@ public class Activator implements BundleActivator {
 		for (AdapterService service : services)
 			service.close();
 		services.clear();
+
+		for (AdapterManager manager : managers)
+			manager.dispose();
+		managers.clear();
 	}
 }
\ No newline at end of file
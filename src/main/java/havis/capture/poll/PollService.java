@@ -1,9 +1,14 @@
 package havis.capture.poll;
 
 import havis.capture.Adapter;
+import havis.capture.AdapterException;
 import havis.capture.AdapterHandler;
+import havis.capture.FieldRef;
+import havis.capture.PartialValuesException;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
@@ -69,52 +74,87 @@ public class PollService {
 					break;
 				}
 
-				// Reading all fields where delay = 0
+				// Collecting all fields where delay = 0
 				currentTime = System.currentTimeMillis();
+				List<State> due = new ArrayList<>();
 				for (State state : fields) {
 					if (state.hasPeriod() && state.remaining(currentTime) == 0) {
-						try {
-							// check if service is still enabled
-							if (!running || Thread.currentThread().isInterrupted()) {
-								return;
-							}
+						due.add(state);
+					}
+				}
 
-							// read value
-							Object value = null;
-							if (adapter != null) {
-								value = adapter.getValue(state.getDevice(), state.getField());
-							} else {
-								value = handler.getValue(state.getDevice(), state.getField());
-							}
+				// check if service is still enabled
+				if (due.isEmpty() || !running || Thread.currentThread().isInterrupted()) {
+					continue;
+				}
 
-							// reset failure counter
-							state.success();
-							// inform listener
-							boolean changed = state.setValue(value);
-							if (listener != null) {
-								try {
-									if (!state.isEventOnlyOnChange() || changed)
-										listener.onSuccess(state.getDevice(), state.getField(), value);
-								} catch (Exception e) {
-									log.log(Level.WARNING, e.getMessage(), e);
-								}
-							}
+				// Reading all due fields at once
+				Map<FieldRef, Object> values = null;
+				Map<FieldRef, AdapterException> failures = null;
+				if (due.size() > 1) {
+					List<FieldRef> refs = new ArrayList<>(due.size());
+					for (State state : due) {
+						refs.add(state.getRef());
+					}
+					try {
+						values = adapter != null ? adapter.getValues(refs) : handler.getValues(refs);
+					} catch (PartialValuesException e) {
+						// fields are not read again
+						values = e.getValues();
+						failures = e.getFailures();
+					} catch (Exception e) {
+						// read fields separately to get the failure of each field
+						log.log(Level.FINE, "Failed to read fields at once: " + e.getMessage(), e);
+					}
+				}
+
+				for (State state : due) {
+					try {
+						// check if service is still enabled
+						if (!running || Thread.currentThread().isInterrupted()) {
+							return;
+						}
+
+						// read value
+						Object value = null;
+						AdapterException failure = failures != null ? failures.get(state.getRef()) : null;
+						if (failure != null) {
+							throw failure;
+						} else if (values != null) {
+							value = values.get(state.getRef());
+						} else if (adapter != null) {
+							value = adapter.getValue(state.getDevice(), state.getField());
+						} else {
+							value = handler.getValue(state.getDevice(), state.getField());
+						}
 
-						} catch (Exception e) {
-							if (!state.isErrorState()) {
-								log.log(Level.WARNING, "Failed to read Device " + state.getDevice() + " " + state.getField() + ":" + e.getMessage(), e);
-								state.setErrorState(true);
+						// reset failure counter
+						state.success();
+						// inform listener
+						boolean changed = state.setValue(value);
+						if (listener != null) {
+							try {
+								if (!state.isEventOnlyOnChange() || changed)
+									listener.onSuccess(state.getDevice(), state.getField(), value);
+							} catch (Exception e) {
+								log.log(Level.WARNING, e.getMessage(), e);
 							}
-							if (listener != null) {
-								try {
-									listener.onFailure(state.getDevice(), state.getField(), e);
-								} catch (Exception ex) {
-									log.log(Level.WARNING, ex.getMessage(), ex);
-								}
+						}
+
+					} catch (Exception e) {
+						if (!state.isErrorState()) {
+							log.log(Level.WARNING, "Failed to read Device " + state.getDevice() + " " + state.getField() + ":" + e.getMessage(), e);
+							state.setErrorState(true);
+						}
+						if (listener != null) {
+							try {
+								listener.onFailure(state.getDevice(), state.getField(), e);
+							} catch (Exception ex) {
+								log.log(Level.WARNING, ex.getMessage(), ex);
 							}
-							state.error();
-							state.next();
 						}
+						state.error();
+						state.next();
 					}
 				}
 			}
@@ -1,5 +1,7 @@
 package havis.capture.poll;
 
+import havis.capture.FieldRef;
+
 import java.util.Objects;
 import java.util.logging.Logger;
 
@@ -9,6 +11,7 @@ class State {
 
 	private String device;
 	private String field;
+	private FieldRef ref;
 	private long period;
 	private long nextReadTime;
 	private boolean failure;
@@ -32,6 +35,7 @@ class State {
 	public State(long time, String device, String field, long period, boolean failure, boolean eventOnlyOnChange) {
 		this.device = device;
 		this.field = field;
+		this.ref = new FieldRef(device, field);
 		this.period = period;
 		this.failure = failure;
 		this.eventOnlyOnChange = eventOnlyOnChange;
@@ -46,6 +50,10 @@ class State {
 		return field;
 	}
 
+	public FieldRef getRef() {
+		return ref;
+	}
+
 	public boolean hasPeriod() {
 		return period > 0;
 	}
@@ -3,6 +3,8 @@ package havis.capture.rest;
 import havis.capture.AdapterException;
 import havis.capture.Device;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.security.PermitAll;
@@ -14,6 +16,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 public interface AdapterService extends AutoCloseable {
@@ -85,6 +88,36 @@ public interface AdapterService extends AutoCloseable {
 	@Consumes({ MediaType.TEXT_PLAIN })
 	public void setValue(@PathParam("device") String device, @PathParam("field") String field, String value) throws AdapterException;
 
+	/**
+	 * Gets the values of several fields of a device. Implementations should
+	 * override this method to read the fields at once with
+	 * {@link havis.capture.AdapterHandler#getValues(java.util.Collection)}.
+	 */
+	@PermitAll
+	@GET
+	@Path("devices/{device}/fields")
+	@Produces({ MediaType.APPLICATION_JSON })
+	public default Map<String, String> getValues(@PathParam("device") String device, @QueryParam("field") List<String> fields) throws AdapterException {
+		Map<String, String> values = new LinkedHashMap<>();
+		for (String field : fields)
+			values.put(field, getValue(device, field));
+		return values;
+	}
+
+	/**
+	 * Sets the values of several fields of a device. Implementations should
+	 * override this method to write the fields at once with
+	 * {@link havis.capture.AdapterHandler#setValues(Map)}.
+	 */
+	@PermitAll
+	@PUT
+	@Path("devices/{device}/fields")
+	@Consumes({ MediaType.APPLICATION_JSON })
+	public default void setValues(@PathParam("device") String device, Map<String, String> values) throws AdapterException {
+		for (Map.Entry<String, String> value : values.entrySet())
+			setValue(device, value.getKey(), value.getValue());
+	}
+
 	// ###################### Subscriptions #####################
 	@PermitAll
 	@POST
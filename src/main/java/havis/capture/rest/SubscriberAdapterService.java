@@ -4,14 +4,16 @@ import havis.capture.Adapter;
 import havis.capture.AdapterException;
 import havis.capture.AdapterHandler;
 import havis.capture.AdapterHandlerFactory;
-import havis.capture.AdapterListener;
 import havis.capture.AdapterManager;
+import havis.capture.BatchAdapterListener;
 import havis.capture.DeviceUsabilityChangedEvent;
 import havis.capture.FieldUsabilityChangedEvent;
 import havis.capture.FieldValueChangedEvent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -76,7 +78,29 @@ public abstract class SubscriberAdapterService implements AdapterService {
 		AdapterHandler handler = null;
 		try {
 			handler = factory.create();
-			handler.setListener(new AdapterListener() {
+			// the client receives the usability changes of all devices
+			handler.setUsabilityBroadcast(true);
+			handler.setListener(new BatchAdapterListener() {
+
+				@Override
+				public void valuesChanged(Adapter source, List<FieldValueChangedEvent> events) {
+					// get the queue of the client
+					BlockingQueue<Object> queue = queues.get(uuid);
+					if (queue != null) {
+						List<Object> values = new ArrayList<>(events.size());
+						for (FieldValueChangedEvent event : events) {
+							try {
+								values.add(mapper.writeValueAsString(event));
+							} catch (JsonProcessingException e) {
+								log.log(Level.FINE, e.getMessage(), e);
+							}
+						}
+						// a full batch may exceed the queue size, so only a
+						// client lagging behind before the batch is dropped
+						if (checkQueue(queue, uuid))
+							queue.addAll(values);
+					}
+				}
 
 				@Override
 				public void valueChanged(Adapter source, final FieldValueChangedEvent event) {
@@ -132,13 +156,20 @@ public abstract class SubscriberAdapterService implements AdapterService {
 		}
 	}
 
-	private void checkQueue(BlockingQueue<Object> queue, String uuid) {
+	/**
+	 * Closes the stream of the client if its queue exceeds the queue size
+	 * 
+	 * @return True if the stream is still open
+	 */
+	private boolean checkQueue(BlockingQueue<Object> queue, String uuid) {
 		if (queue.size() > queueSize) {
 			Iterator<Object> iterator = iterators.remove(uuid);
 			if (iterator != null) {
 				iterator.remove();
 			}
+			return false;
 		}
+		return true;
 	}
 
 	protected Iterator<Object> getStream(final AdapterManager manager, final String uuid) throws AdapterException {
@@ -0,0 +1,108 @@
+package havis.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the dispatch path of the adapter manager from the adapter
+ * callback through the dispatch lane and the mailboxes to the handler
+ * listeners. An operation is one value event raised by the adapter by handle
+ * or by device and field id and delivered to all handlers, measured in
+ * batches which are awaited before the next batch starts. The allocation rate
+ * excludes the events, which are created in advance.
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main AdapterManagerBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterManagerBenchmark {
+
+	private final static int BATCH = 256;
+
+	@Param({ "1", "10" })
+	int handlers;
+
+	/**
+	 * handle or id
+	 */
+	@Param({ "handle", "id" })
+	String route;
+
+	private TestAdapter adapter;
+	private AdapterManager manager;
+	private FieldHandleListener listener;
+	private int handle;
+	private FieldValueChangedEvent[] events = new FieldValueChangedEvent[BATCH];
+	private LongAdder received = new LongAdder();
+	private long expected;
+
+	@Setup
+	public void setup() throws AdapterException {
+		adapter = new TestAdapter();
+		adapter.put("d1", "f1");
+		manager = new AdapterManager(adapter);
+		for (int i = 0; i < handlers; i++) {
+			AdapterHandler handler = manager.createInstance();
+			handler.setListener(new AdapterListener() {
+
+				@Override
+				public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+				}
+
+				@Override
+				public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+				}
+
+				@Override
+				public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+					received.increment();
+				}
+			});
+			handler.subscribe("d1", "f1");
+		}
+		listener = (FieldHandleListener) adapter.listener;
+		handle = listener.getHandle("d1", "f1");
+		for (int i = 0; i < BATCH; i++)
+			events[i] = new FieldValueChangedEvent("d1", "f1", Integer.valueOf(i));
+	}
+
+	@TearDown
+	public void tearDown() {
+		manager.dispose();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void dispatch() {
+		boolean byHandle = "handle".equals(route);
+		for (int i = 0; i < BATCH; i++) {
+			if (byHandle)
+				listener.valueChanged(adapter, handle, events[i]);
+			else
+				listener.valueChanged(adapter, events[i]);
+		}
+		expected += BATCH * handlers;
+		while (received.sum() < expected)
+			Thread.yield();
+	}
+}
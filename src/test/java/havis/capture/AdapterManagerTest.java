@@ -0,0 +1,428 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdapterManagerTest {
+
+	/**
+	 * Adapter which doesn't serialize calls and blocks the first read until
+	 * released
+	 */
+	@AdapterCapabilities(Capability.THREAD_SAFE)
+	private static class SlowAdapter extends TestAdapter {
+
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger reads = new AtomicInteger();
+
+		@Override
+		public Object getValue(String device, String field) throws AdapterException {
+			Object value = super.getValue(device, field);
+			if (reads.getAndIncrement() == 0) {
+				reading.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Asynchronous adapter which keeps the first read pending until released
+	 * and blocks the inventory until released
+	 */
+	private static class PendingAdapter extends TestAdapter implements AsyncAdapter {
+
+		CompletableFuture<Object> pending = new CompletableFuture<>();
+		CountDownLatch inventory = new CountDownLatch(0);
+		AtomicInteger reads = new AtomicInteger();
+
+		@Override
+		public Map<String, Device> getDevices() throws AdapterException {
+			try {
+				inventory.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return super.getDevices();
+		}
+
+		@Override
+		public CompletableFuture<Object> getValueAsync(String device, String field) {
+			if (reads.getAndIncrement() == 0)
+				return pending;
+			return CompletableFuture.completedFuture(values.get(new FieldRef(device, field)));
+		}
+
+		@Override
+		public CompletableFuture<Void> setValueAsync(String device, String field, Object value) {
+			values.put(new FieldRef(device, field), value);
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+
+	/**
+	 * Adapter with options which fails to subscribe to device d2 until
+	 * released
+	 */
+	@AdapterCapabilities(Capability.OPTIONS)
+	private static class OptionsAdapter extends TestAdapter {
+
+		AtomicBoolean failing = new AtomicBoolean(true);
+
+		@Override
+		public void subscribe(String device, String field, SubscriptionOptions options) throws AdapterException {
+			if (failing.get() && device.equals("d2"))
+				throw new AdapterException("Failed to subscribe");
+			super.subscribe(device, field, options);
+		}
+	}
+
+	private static class NullListener implements AdapterListener {
+
+		@Override
+		public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+		}
+	}
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static SubscriptionOptions options(long samplingInterval, double deadband, boolean percent, int queueSize) {
+		SubscriptionOptions options = new SubscriptionOptions();
+		options.setSamplingInterval(samplingInterval);
+		options.setDeadband(deadband);
+		options.setPercentDeadband(percent);
+		options.setQueueSize(queueSize);
+		return options;
+	}
+
+	@Test
+	public void mergeConflicting() {
+		SubscriptionOptions merged = AdapterManager.merge(Arrays.asList(options(100, 2, false, 1), options(50, 5, false, 10)));
+		assertEquals(50, merged.getSamplingInterval());
+		assertEquals(2, merged.getDeadband(), 0);
+		assertEquals(10, merged.getQueueSize());
+
+		// the adapter default of one subscriber disables the sampling interval
+		assertEquals(0, AdapterManager.merge(Arrays.asList(options(100, 0, false, 0), options(0, 0, false, 0))).getSamplingInterval());
+		// absolute and percent deadbands disable the deadband
+		merged = AdapterManager.merge(Arrays.asList(options(0, 2, false, 0), options(0, 1, true, 0)));
+		assertEquals(0, merged.getDeadband(), 0);
+	}
+
+	@Test
+	public void mergeNull() {
+		assertNull(AdapterManager.merge(Arrays.<SubscriptionOptions> asList(null, null)));
+
+		// a subscriber without options disables sampling interval and deadband
+		SubscriptionOptions merged = AdapterManager.merge(Arrays.asList(options(100, 2, false, 5), null));
+		assertEquals(0, merged.getSamplingInterval());
+		assertEquals(0, merged.getDeadband(), 0);
+		assertEquals(5, merged.getQueueSize());
+	}
+
+	@Test
+	public void mergeEmpty() {
+		assertNull(AdapterManager.merge(Collections.<SubscriptionOptions> emptyList()));
+
+		// the options of a single subscriber are copied
+		SubscriptionOptions options = options(100, 2, true, 5);
+		SubscriptionOptions merged = AdapterManager.merge(Collections.singletonList(options));
+		assertNotSame(options, merged);
+		assertEquals(100, merged.getSamplingInterval());
+		assertEquals(2, merged.getDeadband(), 0);
+		assertTrue(merged.isPercentDeadband());
+		assertEquals(5, merged.getQueueSize());
+	}
+
+	@Test
+	public void expandToDiscoveredDevice() throws Exception {
+		final CountDownLatch discovered = new CountDownLatch(1);
+		TestAdapter adapter = new TestAdapter() {
+			@Override
+			public void subscribe(String device, String field) throws AdapterException {
+				super.subscribe(device, field);
+				if (device.equals("d2"))
+					discovered.countDown();
+			}
+		};
+		adapter.put("d1", "f1");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			AdapterHandler handler = manager.createInstance();
+			handler.setListener(new NullListener());
+			handler.subscribePattern("d*", "*");
+			assertEquals(Collections.singleton(new FieldRef("d1", "f1")), adapter.subscribed);
+
+			// the adapter reports a device unknown to the inventory
+			adapter.put("d2", "f2");
+			adapter.listener.usabilityChanged(adapter, new DeviceUsabilityChangedEvent("d2", true));
+			assertTrue(discovered.await(5, TimeUnit.SECONDS));
+			assertTrue(adapter.subscribed.contains(new FieldRef("d2", "f2")));
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void expandToAddedAgain() throws Exception {
+		TestAdapter adapter = new TestAdapter();
+		adapter.put("d1", "f1");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			AdapterHandler handler = manager.createInstance();
+			handler.setListener(new NullListener());
+			handler.subscribePattern("d*", "*");
+			Device device = adapter.devices.get("d1");
+			device.setId("d1");
+
+			handler.remove("d1");
+			assertEquals(0, adapter.subscribed.size());
+			// the removed device is no longer part of the expansion
+			handler.add(device);
+			assertEquals(Collections.singleton(new FieldRef("d1", "f1")), adapter.subscribed);
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void expandInOneCall() throws Exception {
+		final AtomicInteger calls = new AtomicInteger();
+		TestAdapter adapter = new TestAdapter() {
+			@Override
+			public void subscribe(Collection<FieldRef> fields) throws AdapterException {
+				calls.incrementAndGet();
+				super.subscribe(fields);
+			}
+		};
+		adapter.put("d1", "f1");
+		adapter.put("d2", "f2");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			AdapterHandler handler = manager.createInstance();
+			handler.setListener(new NullListener());
+			handler.subscribePattern("d*", "*");
+			assertEquals(1, calls.get());
+			assertEquals(new HashSet<>(Arrays.asList(new FieldRef("d1", "f1"), new FieldRef("d2", "f2"))), adapter.subscribed);
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void expandRollback() throws Exception {
+		OptionsAdapter adapter = new OptionsAdapter();
+		adapter.put("d1", "f1");
+		adapter.put("d2", "f2");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			AdapterHandler handler = manager.createInstance();
+			handler.setListener(new NullListener());
+			try {
+				handler.subscribePattern("d*", "*", new SubscriptionOptions());
+				fail();
+			} catch (AdapterException e) {
+			}
+			// the field subscribed before the failure is unsubscribed again
+			assertEquals(0, adapter.subscribed.size());
+
+			adapter.failing.set(false);
+			handler.subscribePattern("d*", "*", new SubscriptionOptions());
+			assertEquals(2, adapter.subscribed.size());
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void subscribeRollback() throws Exception {
+		final Set<FieldRef> unsubscribed = new HashSet<>();
+		TestAdapter adapter = new TestAdapter() {
+			@Override
+			public void subscribe(String device, String field) throws AdapterException {
+				if (device.equals("d2"))
+					throw new AdapterException("Failed to subscribe");
+				super.subscribe(device, field);
+			}
+
+			@Override
+			public void unsubscribe(String device, String field) throws AdapterException {
+				unsubscribed.add(new FieldRef(device, field));
+				super.unsubscribe(device, field);
+			}
+		};
+		adapter.put("d1", "f1");
+		adapter.put("d2", "f2");
+		adapter.put("d3", "f3");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			AdapterHandler handler = manager.createInstance();
+			handler.setListener(new NullListener());
+			try {
+				handler.subscribe(Arrays.asList(new FieldRef("d1", "f1"), new FieldRef("d2", "f2"), new FieldRef("d3", "f3")));
+				fail();
+			} catch (AdapterException e) {
+			}
+			// the field subscribed before the failure is unsubscribed again
+			assertEquals(Collections.singleton(new FieldRef("d1", "f1")), unsubscribed);
+			assertEquals(0, adapter.subscribed.size());
+			assertEquals(0, handler.getSubscriptions().size());
+
+			// the manager kept no subscription, so the adapter is subscribed
+			AdapterHandler other = manager.createInstance();
+			other.setListener(new NullListener());
+			other.subscribe("d1", "f1");
+			assertEquals(Collections.singleton(new FieldRef("d1", "f1")), adapter.subscribed);
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void maxAgeWithoutInventory() throws Exception {
+		TestAdapter adapter = new TestAdapter() {
+			@Override
+			public Map<String, Device> getDevices() throws AdapterException {
+				throw new AdapterException("Inventory not available");
+			}
+		};
+		adapter.values.put(new FieldRef("d1", "f1"), "value");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			// reads without a max age
+			assertEquals("value", manager.createInstance().getValue("d1", "f1"));
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void readAfterWrite() throws Exception {
+		SlowAdapter adapter = new SlowAdapter();
+		adapter.put("d1", "f1");
+		adapter.values.put(new FieldRef("d1", "f1"), "old");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			final AdapterHandler handler = manager.createInstance();
+			Callable<Object> read = new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return handler.getValue("d1", "f1", 0);
+				}
+			};
+			Future<Object> before = executor.submit(read);
+			assertTrue(adapter.reading.await(5, TimeUnit.SECONDS));
+
+			handler.setValue("d1", "f1", "new");
+			// must not join the read started before the write
+			assertEquals("new", executor.submit(read).get(2, TimeUnit.SECONDS));
+
+			adapter.release.countDown();
+			assertEquals("old", before.get(5, TimeUnit.SECONDS));
+		} finally {
+			adapter.release.countDown();
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void readAfterWriteAsync() throws Exception {
+		PendingAdapter adapter = new PendingAdapter();
+		adapter.put("d1", "f1");
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			AsyncAdapterHandler handler = manager.createAsyncInstance();
+			CompletableFuture<Object> before = handler.getValue("d1", "f1", 0);
+			handler.setValue("d1", "f1", "new").get(5, TimeUnit.SECONDS);
+			// must not join the read started before the write
+			assertEquals("new", handler.getValue("d1", "f1", 0).get(2, TimeUnit.SECONDS));
+
+			adapter.pending.complete("old");
+			assertEquals("old", before.get(5, TimeUnit.SECONDS));
+		} finally {
+			manager.dispose();
+		}
+	}
+
+	@Test
+	public void maxAgeAsync() throws Exception {
+		final PendingAdapter adapter = new PendingAdapter();
+		adapter.put("d1", "f1");
+		adapter.values.put(new FieldRef("d1", "f1"), "value");
+		adapter.reads.set(1);
+		adapter.inventory = new CountDownLatch(1);
+
+		AdapterManager manager = new AdapterManager(adapter);
+		try {
+			final AsyncAdapterHandler handler = manager.createAsyncInstance();
+			// the max age is resolved from the blocked inventory
+			Future<CompletableFuture<Object>> call = executor.submit(new Callable<CompletableFuture<Object>>() {
+				@Override
+				public CompletableFuture<Object> call() throws Exception {
+					return handler.getValue("d1", "f1");
+				}
+			});
+			CompletableFuture<Object> value = call.get(2, TimeUnit.SECONDS);
+
+			adapter.inventory.countDown();
+			assertEquals("value", value.get(5, TimeUnit.SECONDS));
+		} finally {
+			adapter.inventory.countDown();
+			manager.dispose();
+		}
+	}
+}
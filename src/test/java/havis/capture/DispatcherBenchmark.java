@@ -0,0 +1,90 @@
+package havis.capture;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the dispatch lanes with queues and with rings of each wait
+ * strategy. An operation is one event dispatched and delivered, measured in
+ * batches which are awaited before the next batch starts. BUSY_SPIN is left
+ * out by default, it is only meaningful with a core per lane.
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main DispatcherBenchmark -prof gc
+ * java -cp ... org.openjdk.jmh.Main DispatcherBenchmark -p strategy=BUSY_SPIN
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatcherBenchmark {
+
+	private final static int BATCH = 1000;
+
+	/**
+	 * QUEUE or the name of a {@link WaitStrategy}
+	 */
+	@Param({ "QUEUE", "BLOCKING", "SLEEPING", "YIELDING" })
+	String strategy;
+
+	@Param({ "1024" })
+	int capacity;
+
+	private Dispatcher dispatcher;
+	private volatile long delivered;
+	private long dispatched;
+	private FieldValueChangedEvent[] events = new FieldValueChangedEvent[BATCH];
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < BATCH; i++)
+			events[i] = new FieldValueChangedEvent("device", "field" + i, Integer.valueOf(i));
+		dispatcher = new Dispatcher(new AdapterListener() {
+
+			@Override
+			public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+			}
+
+			@Override
+			public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+			}
+
+			@Override
+			public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+				// single consumer thread
+				delivered++;
+			}
+		}, 1, capacity, OverflowPolicy.BLOCK, "QUEUE".equals(strategy) ? null : WaitStrategy.valueOf(strategy));
+	}
+
+	@TearDown
+	public void tearDown() {
+		dispatcher.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void dispatch() {
+		for (int i = 0; i < BATCH; i++)
+			dispatcher.dispatch(null, events[i]);
+		dispatched += BATCH;
+		while (delivered < dispatched)
+			Thread.yield();
+	}
+}
@@ -0,0 +1,88 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EventQueueTest {
+
+	@Test
+	public void dropOldest() {
+		EventQueue queue = new EventQueue(2, OverflowPolicy.DROP_OLDEST);
+		FieldValueChangedEvent e1 = new FieldValueChangedEvent("d1", "f1", 1);
+		FieldValueChangedEvent e2 = new FieldValueChangedEvent("d1", "f1", 2);
+		FieldValueChangedEvent e3 = new FieldValueChangedEvent("d1", "f1", 3);
+		assertTrue(queue.offer(null, e1, false));
+		assertTrue(queue.offer(null, e2, false));
+		assertTrue(queue.offer(null, e3, false));
+		assertEquals(1, queue.getDropped());
+		assertSame(e2, queue.poll().event);
+		assertSame(e3, queue.poll().event);
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void conflate() {
+		EventQueue queue = new EventQueue(10, OverflowPolicy.BLOCK);
+		FieldValueChangedEvent e1 = new FieldValueChangedEvent("d1", "f1", 1);
+		FieldValueChangedEvent e2 = new FieldValueChangedEvent("d1", "f2", 2);
+		FieldValueChangedEvent e3 = new FieldValueChangedEvent("d1", "f1", 3);
+		assertTrue(queue.offer(null, e1, true));
+		assertTrue(queue.offer(null, e2, true));
+		assertFalse(queue.offer(null, e3, true));
+		assertEquals(1, queue.getCoalesced());
+		assertSame(e3, queue.poll().event);
+		assertSame(e2, queue.poll().event);
+	}
+
+	@Test
+	public void controlFirst() {
+		EventQueue queue = new EventQueue(10, OverflowPolicy.BLOCK);
+		FieldValueChangedEvent value = new FieldValueChangedEvent("d1", "f1", 1);
+		DeviceUsabilityChangedEvent device = new DeviceUsabilityChangedEvent("d1", false);
+		assertTrue(queue.offer(null, value, false));
+		assertTrue(queue.offer(null, device, false));
+		assertTrue(queue.hasControl());
+		assertEquals(2, queue.size());
+		assertSame(device, queue.poll().event);
+		assertFalse(queue.hasControl());
+		assertSame(value, queue.poll().event);
+	}
+
+	@Test
+	public void controlBounded() {
+		EventQueue queue = new EventQueue(1, OverflowPolicy.DROP_NEWEST);
+		for (int i = 0; i < 100; i++) {
+			queue.offer(null, new DeviceUsabilityChangedEvent("d1", i % 2 == 0), false);
+			queue.offer(null, new FieldUsabilityChangedEvent("d1", "f1", i % 2 == 0), false);
+		}
+		DeviceUsabilityChangedEvent last = new DeviceUsabilityChangedEvent("d1", true);
+		queue.offer(null, last, false);
+		// one entry per device and field, the latest state wins
+		assertEquals(2, queue.size());
+		assertEquals(0, queue.getDropped());
+		assertSame(last, queue.poll().event);
+		assertFalse(((FieldUsabilityChangedEvent) queue.poll().event).isUsable());
+		assertNull(queue.poll());
+
+		// a polled change is not replaced anymore
+		assertTrue(queue.offer(null, last, false));
+	}
+
+	@Test
+	public void dropInsteadOfWait() {
+		EventQueue queue = new EventQueue(1, OverflowPolicy.BLOCK);
+		FieldValueChangedEvent e1 = new FieldValueChangedEvent("d1", "f1", 1);
+		FieldValueChangedEvent e2 = new FieldValueChangedEvent("d1", "f2", 2);
+		assertTrue(queue.offer(null, e1, false, false));
+		// returns at once although the policy waits
+		assertTrue(queue.offer(null, e2, false, false));
+		assertEquals(1, queue.getDropped());
+		assertSame(e2, queue.poll().event);
+		assertNull(queue.poll());
+	}
+}
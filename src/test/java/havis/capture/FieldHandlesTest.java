@@ -0,0 +1,62 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FieldHandlesTest {
+
+	@Test
+	public void register() {
+		FieldHandles handles = new FieldHandles();
+		FieldHandles.Slot slot = handles.register("d1", "f1");
+		assertSame(slot, handles.register("d1", "f1"));
+		assertSame(slot, handles.get("d1", "f1"));
+		assertSame(slot, handles.get(slot.getHandle()));
+		assertNull(handles.get("d1", "f2"));
+		assertEquals(new FieldRef("d1", "f1"), slot.getRef());
+	}
+
+	@Test
+	public void sampleAfterWrite() {
+		FieldHandles.Slot slot = new FieldHandles().register("d1", "f1");
+		long writes = slot.getWrites();
+		assertTrue(slot.sample("old", writes));
+		assertTrue(slot.isSampled());
+
+		// a read started before a write must not cache its value
+		writes = slot.getWrites();
+		slot.invalidate();
+		assertFalse(slot.sample("old", writes));
+		assertFalse(slot.isSampled());
+
+		assertTrue(slot.sample("new", slot.getWrites()));
+		assertEquals("new", slot.getValue());
+	}
+
+	@Test
+	public void remove() {
+		FieldHandles handles = new FieldHandles();
+		FieldHandles.Slot unused = handles.register("d1", "f1");
+		FieldHandles.Slot subscribed = handles.register("d1", "f2");
+		subscribed.listeners = new ListenerList<>();
+		subscribed.sample("value");
+		FieldHandles.Slot other = handles.register("d2", "f1");
+
+		handles.remove("d1");
+		assertNull(handles.get("d1", "f1"));
+		assertNull(handles.get(unused.getHandle()));
+		// slots with listeners are kept without their value
+		assertSame(subscribed, handles.get("d1", "f2"));
+		assertFalse(subscribed.isSampled());
+		assertNull(subscribed.getValue());
+		assertSame(other, handles.get("d2", "f1"));
+
+		// handles are not reused
+		assertTrue(handles.register("d1", "f1").getHandle() > other.getHandle());
+	}
+}
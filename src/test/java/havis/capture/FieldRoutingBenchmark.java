@@ -0,0 +1,99 @@
+package havis.capture;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the per event lookup of field state. The router finds a slot by
+ * handle or by device and field id, the filters keep their state in a
+ * {@link FieldMap}. Both replaced maps keyed by a {@link FieldRef} created
+ * per event.
+ *
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main FieldRoutingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldRoutingBenchmark {
+
+	@Param({ "10", "1000" })
+	int devices;
+
+	@Param({ "10" })
+	int fields;
+
+	private String[] deviceIds;
+	private String[] fieldIds;
+	private int[] ids;
+	private FieldHandles handles;
+	private Map<FieldRef, Object> refs;
+	private FieldMap<Object> map;
+	private int next;
+
+	@Setup
+	public void setup() {
+		deviceIds = new String[devices * fields];
+		fieldIds = new String[devices * fields];
+		ids = new int[devices * fields];
+		handles = new FieldHandles();
+		refs = new ConcurrentHashMap<>();
+		map = new FieldMap<>();
+		for (int d = 0; d < devices; d++) {
+			for (int f = 0; f < fields; f++) {
+				int i = d * fields + f;
+				deviceIds[i] = "device" + d;
+				fieldIds[i] = "field" + f;
+				ids[i] = handles.register(deviceIds[i], fieldIds[i]).getHandle();
+				refs.put(new FieldRef(deviceIds[i], fieldIds[i]), new Object());
+				map.putIfAbsent(deviceIds[i], fieldIds[i], new Object());
+			}
+		}
+	}
+
+	private int next() {
+		int i = next;
+		next = i + 1 == ids.length ? 0 : i + 1;
+		return i;
+	}
+
+	@Benchmark
+	public Object handle() {
+		return handles.get(ids[next()]);
+	}
+
+	@Benchmark
+	public Object deviceField() {
+		int i = next();
+		return handles.get(deviceIds[i], fieldIds[i]);
+	}
+
+	@Benchmark
+	public Object fieldMap() {
+		int i = next();
+		return map.get(deviceIds[i], fieldIds[i]);
+	}
+
+	@Benchmark
+	public Object fieldRef() {
+		int i = next();
+		return refs.get(new FieldRef(deviceIds[i], fieldIds[i]));
+	}
+}
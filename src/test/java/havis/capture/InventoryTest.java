@@ -0,0 +1,63 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InventoryTest {
+
+	private static Device device(String id, boolean usable) {
+		Device device = new Device();
+		device.setId(id);
+		device.setUsable(usable);
+		return device;
+	}
+
+	@Test
+	public void setUsable() {
+		Map<String, Device> devices = new LinkedHashMap<>();
+		devices.put("d1", device("d1", true));
+		devices.put("d2", device("d2", true));
+		Inventory inventory = new Inventory(1, devices);
+
+		Inventory changed = inventory.setUsable(2, "d1", false);
+		assertEquals(2, changed.getVersion());
+		assertFalse(changed.getDevices().get("d1").isUsable());
+		// the snapshot is immutable
+		assertTrue(inventory.getDevices().get("d1").isUsable());
+		// other devices are shared
+		assertSame(inventory.getDevices().get("d2"), changed.getDevices().get("d2"));
+
+		assertNull(inventory.setUsable(2, "d3", false));
+	}
+
+	@Test
+	public void adapterInstances() {
+		Map<String, Device> devices = new LinkedHashMap<>();
+		Device device = new Device() {
+		};
+		device.setId("d1");
+		device.setUsable(true);
+		devices.put("d1", device);
+		Inventory inventory = new Inventory(1, devices);
+
+		// subclasses of the adapter are passed as they are
+		assertSame(device, inventory.getDevices().get("d1"));
+		try {
+			inventory.getDevices().remove("d1");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		// a subclass can't be copied, so the snapshot must be rebuilt
+		assertNull(inventory.setUsable(2, "d1", false));
+		assertTrue(device.isUsable());
+	}
+}
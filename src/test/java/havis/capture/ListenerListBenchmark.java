@@ -0,0 +1,91 @@
+package havis.capture;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the listener registry with the copy-on-write lists it replaced.
+ * Iterating shows the cost per event, subscribing shows the cost of adding
+ * and removing one listener of a field with many listeners, with and without
+ * an event in between.
+ * 
+ * <pre>
+ * java -cp ... org.openjdk.jmh.Main ListenerListBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerListBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	int size;
+
+	private ListenerList<Object> list;
+	private List<Object> cow;
+	private Object listener = new Object();
+
+	@Setup
+	public void setup() {
+		list = new ListenerList<>();
+		cow = new CopyOnWriteArrayList<>();
+		for (int i = 0; i < size; i++) {
+			Object o = new Object();
+			list.add(o);
+			cow.add(o);
+		}
+	}
+
+	@Benchmark
+	public void iterateListenerList(Blackhole hole) {
+		for (ListenerList.Node<Object> node = list.first(); node != null; node = node.next())
+			hole.consume(node.get());
+	}
+
+	@Benchmark
+	public void iterateSnapshot(Blackhole hole) {
+		for (Object o : list.snapshot())
+			hole.consume(o);
+	}
+
+	@Benchmark
+	public void iterateCopyOnWrite(Blackhole hole) {
+		for (Object o : cow)
+			hole.consume(o);
+	}
+
+	@Benchmark
+	public void subscribeListenerList() {
+		list.remove(list.add(listener));
+	}
+
+	@Benchmark
+	public Object[] subscribeSnapshot() {
+		// an event between the changes rebuilds the snapshot
+		list.remove(list.add(listener));
+		return list.snapshot();
+	}
+
+	@Benchmark
+	public void subscribeCopyOnWrite() {
+		cow.add(listener);
+		cow.remove(listener);
+	}
+}
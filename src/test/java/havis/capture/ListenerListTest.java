@@ -0,0 +1,100 @@
+package havis.capture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ListenerListTest {
+
+	private static List<String> values(ListenerList<String> list) {
+		List<String> values = new ArrayList<>();
+		for (ListenerList.Node<String> node = list.first(); node != null; node = node.next())
+			values.add(node.get());
+		return values;
+	}
+
+	@Test
+	public void addRemove() {
+		ListenerList<String> list = new ListenerList<>();
+		assertTrue(list.isEmpty());
+		assertNull(list.first());
+
+		ListenerList.Node<String> a = list.add("a");
+		ListenerList.Node<String> b = list.add("b");
+		list.add("c");
+		assertEquals(3, list.size());
+		assertEquals(Arrays.asList("a", "b", "c"), values(list));
+
+		assertTrue(list.remove(b));
+		assertFalse(list.remove(b));
+		assertEquals(Arrays.asList("a", "c"), values(list));
+
+		assertTrue(list.remove("c"));
+		assertFalse(list.remove("c"));
+		assertTrue(list.remove(a));
+		assertTrue(list.isEmpty());
+		assertNull(list.first());
+
+		// the tail is reset, further listeners are appended
+		list.add("d");
+		assertEquals(Arrays.asList("d"), values(list));
+	}
+
+	@Test
+	public void removeDuringIteration() {
+		ListenerList<String> list = new ListenerList<>();
+		list.add("a");
+		ListenerList.Node<String> b = list.add("b");
+		ListenerList.Node<String> c = list.add("c");
+		list.add("d");
+
+		List<String> visited = new ArrayList<>();
+		for (ListenerList.Node<String> node = list.first(); node != null; node = node.next()) {
+			visited.add(node.get());
+			if (node == b) {
+				// the current node and its successor
+				list.remove(b);
+				list.remove(c);
+			}
+		}
+		// the removed successor is skipped, the remaining ones are reached
+		assertEquals(Arrays.asList("a", "b", "d"), visited);
+		assertEquals(Arrays.asList("a", "d"), values(list));
+
+		// a listener added during iteration is reached
+		visited.clear();
+		for (ListenerList.Node<String> node = list.first(); node != null; node = node.next()) {
+			visited.add(node.get());
+			if (visited.size() == 1)
+				list.add("e");
+		}
+		assertEquals(Arrays.asList("a", "d", "e"), visited);
+	}
+
+	@Test
+	public void snapshot() {
+		ListenerList<String> list = new ListenerList<>();
+		assertEquals(0, list.snapshot().length);
+
+		ListenerList.Node<String> a = list.add("a");
+		list.add("b");
+		Object[] snapshot = list.snapshot();
+		assertArrayEquals(new Object[] { "a", "b" }, snapshot);
+		// shared until the next change
+		assertSame(snapshot, list.snapshot());
+
+		list.remove(a);
+		assertArrayEquals(new Object[] { "b" }, list.snapshot());
+		// a snapshot taken before is not modified
+		assertArrayEquals(new Object[] { "a", "b" }, snapshot);
+	}
+}
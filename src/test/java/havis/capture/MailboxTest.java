@@ -0,0 +1,235 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MailboxTest {
+
+	/**
+	 * Runs the submitted tasks on request
+	 */
+	private static class ManualExecutor implements Executor {
+
+		private List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public synchronized void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		synchronized int size() {
+			return tasks.size();
+		}
+
+		void run() {
+			List<Runnable> tasks;
+			synchronized (this) {
+				tasks = this.tasks;
+				this.tasks = new ArrayList<>();
+			}
+			for (Runnable task : tasks)
+				task.run();
+		}
+	}
+
+	/**
+	 * Records batches as lists and single events as singleton lists
+	 */
+	private static class Recorder implements BatchAdapterListener {
+
+		private List<List<DeviceStateChangedEvent>> received = Collections.synchronizedList(new ArrayList<List<DeviceStateChangedEvent>>());
+		private CountDownLatch latch = new CountDownLatch(1);
+
+		@Override
+		public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+			received.add(Collections.<DeviceStateChangedEvent> singletonList(event));
+			latch.countDown();
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+			received.add(Collections.<DeviceStateChangedEvent> singletonList(event));
+			latch.countDown();
+		}
+
+		@Override
+		public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+			received.add(Collections.<DeviceStateChangedEvent> singletonList(event));
+			latch.countDown();
+		}
+
+		@Override
+		public void valuesChanged(Adapter source, List<FieldValueChangedEvent> events) {
+			received.add(new ArrayList<DeviceStateChangedEvent>(events));
+			latch.countDown();
+		}
+	}
+
+	private ScheduledExecutorService scheduler;
+
+	@Before
+	public void setUp() {
+		scheduler = new ScheduledThreadPoolExecutor(1);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	private static FieldValueChangedEvent value(int i) {
+		return new FieldValueChangedEvent("d1", "f" + i, i);
+	}
+
+	@Test
+	public void flushOnSize() {
+		ManualExecutor executor = new ManualExecutor();
+		Recorder recorder = new Recorder();
+		Mailbox mailbox = new Mailbox(executor, scheduler, recorder, 100, OverflowPolicy.BLOCK, 3, 10000);
+		mailbox.setBatch(true);
+
+		FieldValueChangedEvent e1 = value(1), e2 = value(2), e3 = value(3);
+		mailbox.offer(null, e1, false);
+		assertEquals(1, executor.size());
+		// waits for the batch to fill
+		executor.run();
+		assertEquals(0, recorder.received.size());
+
+		mailbox.offer(null, e2, false);
+		assertEquals(0, executor.size());
+		mailbox.offer(null, e3, false);
+		// the full batch is delivered without waiting for the latency
+		assertEquals(1, executor.size());
+		executor.run();
+		assertEquals(Arrays.asList(Arrays.<DeviceStateChangedEvent> asList(e1, e2, e3)), recorder.received);
+	}
+
+	@Test
+	public void flushOnLatency() throws InterruptedException {
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+		Recorder recorder = new Recorder();
+		Mailbox mailbox = new Mailbox(executor, scheduler, recorder, 100, OverflowPolicy.BLOCK, 10, 50);
+		mailbox.setBatch(true);
+
+		long start = System.nanoTime();
+		FieldValueChangedEvent e1 = value(1), e2 = value(2);
+		mailbox.offer(null, e1, false);
+		mailbox.offer(null, e2, false);
+		assertEquals(0, recorder.received.size());
+
+		assertTrue(recorder.latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+		assertEquals(Arrays.asList(Arrays.<DeviceStateChangedEvent> asList(e1, e2)), recorder.received);
+	}
+
+	@Test
+	public void flushOnControl() {
+		ManualExecutor executor = new ManualExecutor();
+		Recorder recorder = new Recorder();
+		Mailbox mailbox = new Mailbox(executor, scheduler, recorder, 100, OverflowPolicy.BLOCK, 10, 10000);
+		mailbox.setBatch(true);
+
+		FieldValueChangedEvent e1 = value(1);
+		DeviceUsabilityChangedEvent usability = new DeviceUsabilityChangedEvent("d1", false);
+		mailbox.offer(null, e1, false);
+		executor.run();
+		assertEquals(0, recorder.received.size());
+
+		// a usability change ends the wait and is delivered first
+		mailbox.offer(null, usability, false);
+		assertEquals(1, executor.size());
+		executor.run();
+		assertEquals(2, recorder.received.size());
+		assertSame(usability, recorder.received.get(0).get(0));
+		assertEquals(Arrays.<DeviceStateChangedEvent> asList(e1), recorder.received.get(1));
+	}
+
+	@Test
+	public void handOver() {
+		ManualExecutor executor = new ManualExecutor();
+		Recorder recorder = new Recorder();
+		Mailbox mailbox = new Mailbox(executor, scheduler, recorder, 100, OverflowPolicy.BLOCK, 2, 0);
+
+		for (int i = 0; i < 5; i++)
+			mailbox.offer(null, value(i), false);
+		// each run delivers up to the batch size and re-submits the mailbox
+		executor.run();
+		assertEquals(2, recorder.received.size());
+		executor.run();
+		assertEquals(4, recorder.received.size());
+		executor.run();
+		assertEquals(5, recorder.received.size());
+		assertEquals(0, executor.size());
+		assertEquals(5, mailbox.getMetrics().getDelivered());
+	}
+
+	@Test
+	public void noWaitOutsideLanes() {
+		ManualExecutor executor = new ManualExecutor();
+		Recorder recorder = new Recorder();
+		Mailbox mailbox = new Mailbox(executor, scheduler, recorder, 2, OverflowPolicy.BLOCK, 10, 0);
+
+		// the test thread is no dispatch lane, the full mailbox sheds values
+		List<DeviceStateChangedEvent> offered = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			FieldValueChangedEvent event = value(i);
+			offered.add(event);
+			mailbox.offer(null, event, false);
+		}
+		assertEquals(3, mailbox.getMetrics().getDropped());
+		executor.run();
+		assertEquals(Arrays.asList(offered.subList(3, 4), offered.subList(4, 5)), recorder.received);
+	}
+
+	@Test
+	public void close() {
+		ManualExecutor executor = new ManualExecutor();
+		Recorder recorder = new Recorder();
+		Mailbox mailbox = new Mailbox(executor, scheduler, recorder, 10, OverflowPolicy.BLOCK, 10, 0);
+
+		mailbox.offer(null, value(1), false);
+		mailbox.close();
+		// the pending event is discarded
+		executor.run();
+		assertEquals(0, recorder.received.size());
+
+		mailbox.offer(null, value(2), false);
+		assertEquals(0, executor.size());
+		assertEquals(0, recorder.received.size());
+	}
+
+	@Test
+	public void rejected() {
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException();
+			}
+		};
+		Mailbox mailbox = new Mailbox(executor, scheduler, new Recorder(), 10, OverflowPolicy.BLOCK, 10, 0);
+		// a disposed executor doesn't fail the offering thread
+		mailbox.offer(null, value(1), false);
+		mailbox.offer(null, value(2), false);
+	}
+}
@@ -0,0 +1,151 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PatternIndexTest {
+
+	private static class Recorder implements AdapterListener {
+
+		private String name;
+		private List<String> received;
+
+		private Recorder(String name, List<String> received) {
+			this.name = name;
+			this.received = received;
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+		}
+
+		@Override
+		public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+			received.add(name);
+		}
+	}
+
+	private static List<String> match(PatternIndex index, List<String> received, String device, String field) {
+		received.clear();
+		index.valueChanged(null, new FieldValueChangedEvent(device, field, 1));
+		List<String> result = new ArrayList<>(received);
+		Collections.sort(result);
+		return result;
+	}
+
+	@Test
+	public void matches() {
+		assertTrue(PatternIndex.isPattern("*"));
+		assertTrue(PatternIndex.isPattern("ab*"));
+		assertFalse(PatternIndex.isPattern("ab"));
+		assertFalse(PatternIndex.isPattern(null));
+
+		assertTrue(PatternIndex.matches("*", "ab"));
+		assertTrue(PatternIndex.matches("*", ""));
+		assertTrue(PatternIndex.matches("ab*", "ab"));
+		assertTrue(PatternIndex.matches("ab*", "abc"));
+		assertFalse(PatternIndex.matches("ab*", "a"));
+		assertFalse(PatternIndex.matches("ab*", "xab"));
+		assertTrue(PatternIndex.matches("ab", "ab"));
+		assertFalse(PatternIndex.matches("ab", "abc"));
+		assertFalse(PatternIndex.matches(null, "ab"));
+		assertFalse(PatternIndex.matches("*", null));
+	}
+
+	@Test
+	public void valueChanged() {
+		List<String> received = new ArrayList<>();
+		AdapterListener capsule = new Recorder("capsule", received);
+		PatternIndex index = new PatternIndex();
+		index.add("*", "*", new Recorder("all", received), capsule);
+		index.add("sensor*", "temp", new Recorder("prefix-exact", received), capsule);
+		index.add("sensor1", "t*", new Recorder("exact-prefix", received), capsule);
+		index.add("sensor1", "temp", new Recorder("exact", received), capsule);
+		index.add("sensor12", "*", new Recorder("longer", received), capsule);
+
+		assertEquals(Arrays.asList("all", "exact", "exact-prefix", "prefix-exact"), match(index, received, "sensor1", "temp"));
+		assertEquals(Arrays.asList("all", "exact-prefix"), match(index, received, "sensor1", "t"));
+		assertEquals(Arrays.asList("all", "longer", "prefix-exact"), match(index, received, "sensor12", "temp"));
+		assertEquals(Arrays.asList("all", "prefix-exact"), match(index, received, "sensor", "temp"));
+		assertEquals(Arrays.asList("all"), match(index, received, "sensor1", "humidity"));
+		assertEquals(Arrays.asList("all"), match(index, received, "sens", "temp"));
+		assertEquals(Arrays.asList("all"), match(index, received, "", ""));
+		// events without device or field are not matched
+		assertEquals(Collections.<String> emptyList(), match(index, received, null, "temp"));
+		assertEquals(Collections.<String> emptyList(), match(index, received, "sensor1", null));
+	}
+
+	@Test
+	public void remove() {
+		List<String> received = new ArrayList<>();
+		AdapterListener capsule = new Recorder("capsule", received);
+		AdapterListener first = new Recorder("first", received);
+		AdapterListener second = new Recorder("second", received);
+		PatternIndex index = new PatternIndex();
+		index.add("d*", "f*", first, capsule);
+		index.add("d*", "f*", second, capsule);
+		assertEquals(Arrays.asList("first", "second"), match(index, received, "d1", "f1"));
+
+		assertTrue(index.remove("d*", "f*", first, capsule));
+		assertFalse(index.remove("d*", "f*", first, capsule));
+		// only the same pattern removes a subscription
+		assertFalse(index.remove("d1", "f1", second, capsule));
+		assertFalse(index.remove("x*", "f*", second, capsule));
+		assertEquals(Arrays.asList("second"), match(index, received, "d1", "f1"));
+
+		assertTrue(index.remove("d*", "f*", second, capsule));
+		assertEquals(Collections.<String> emptyList(), match(index, received, "d1", "f1"));
+
+		// emptied nodes are reused
+		index.add("d*", "f*", first, capsule);
+		assertEquals(Arrays.asList("first"), match(index, received, "d1", "f1"));
+	}
+
+	@Test
+	public void collect() {
+		List<String> received = new ArrayList<>();
+		AdapterListener all = new Recorder("all", received);
+		AdapterListener prefix = new Recorder("prefix", received);
+		AdapterListener exact = new Recorder("exact", received);
+		AdapterListener l1 = new Recorder("l1", received), l2 = new Recorder("l2", received);
+		PatternIndex index = new PatternIndex();
+		index.add("*", "f1", new Recorder("l0", received), all);
+		index.add("d*", "f1", l1, prefix);
+		index.add("d*", "f2", l2, prefix);
+		index.add("d1", "*", new Recorder("l3", received), exact);
+
+		Set<AdapterListener> capsules = new HashSet<>();
+		index.collect("d1", capsules);
+		assertEquals(new HashSet<>(Arrays.asList(all, prefix, exact)), capsules);
+
+		capsules.clear();
+		index.collect("d2", capsules);
+		assertEquals(new HashSet<>(Arrays.asList(all, prefix)), capsules);
+
+		// a capsule is kept until its last subscription of the pattern is
+		// removed
+		index.remove("d*", "f1", l1, prefix);
+		capsules.clear();
+		index.collect("d2", capsules);
+		assertEquals(new HashSet<>(Arrays.asList(all, prefix)), capsules);
+
+		index.remove("d*", "f2", l2, prefix);
+		capsules.clear();
+		index.collect("d2", capsules);
+		assertEquals(new HashSet<>(Arrays.asList(all)), capsules);
+	}
+}
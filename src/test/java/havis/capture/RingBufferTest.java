@@ -0,0 +1,129 @@
+package havis.capture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+	private static class Collector implements AdapterListener {
+
+		private List<DeviceStateChangedEvent> events = new ArrayList<>();
+
+		@Override
+		public void usabilityChanged(Adapter source, DeviceUsabilityChangedEvent event) {
+			events.add(event);
+		}
+
+		@Override
+		public void usabilityChanged(Adapter source, FieldUsabilityChangedEvent event) {
+			events.add(event);
+		}
+
+		@Override
+		public void valueChanged(Adapter source, FieldValueChangedEvent event) {
+			events.add(event);
+		}
+	}
+
+	@Test
+	public void wrapAround() throws InterruptedException {
+		RingBuffer ring = new RingBuffer(3, WaitStrategy.SLEEPING);
+		Collector collector = new Collector();
+		List<DeviceStateChangedEvent> published = new ArrayList<>();
+		// the capacity is rounded up to 4, the slots are reused ten times
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 4; i++) {
+				FieldValueChangedEvent event = new FieldValueChangedEvent("d1", "f1", round * 4 + i);
+				assertTrue(ring.publish(null, event));
+				published.add(event);
+			}
+			assertEquals(4, ring.size());
+			for (int i = 0; i < 4; i++)
+				ring.consume(collector);
+			assertEquals(0, ring.size());
+		}
+		assertEquals(published, collector.events);
+	}
+
+	@Test
+	public void producerWaitsWhileFull() throws InterruptedException {
+		for (WaitStrategy strategy : new WaitStrategy[] { WaitStrategy.BLOCKING, WaitStrategy.SLEEPING, WaitStrategy.YIELDING }) {
+			final RingBuffer ring = new RingBuffer(2, strategy);
+			final List<DeviceStateChangedEvent> published = new ArrayList<>();
+			for (int i = 0; i < 100; i++)
+				published.add(new FieldValueChangedEvent("d1", "f1", i));
+			Thread producer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (DeviceStateChangedEvent event : published)
+						ring.publish(null, event);
+				}
+			});
+			producer.start();
+			Collector collector = new Collector();
+			for (int i = 0; i < published.size(); i++)
+				ring.consume(collector);
+			producer.join(5000);
+			assertFalse(producer.isAlive());
+			assertEquals(strategy.name(), published, collector.events);
+		}
+	}
+
+	@Test
+	public void close() throws InterruptedException {
+		final RingBuffer ring = new RingBuffer(1, WaitStrategy.BLOCKING);
+		assertTrue(ring.publish(null, new FieldValueChangedEvent("d1", "f1", 1)));
+		final AtomicBoolean result = new AtomicBoolean(true);
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				result.set(ring.publish(null, new FieldValueChangedEvent("d1", "f1", 2)));
+			}
+		});
+		producer.start();
+		// waits while the ring is full
+		producer.join(100);
+		assertTrue(producer.isAlive());
+
+		ring.close();
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		assertFalse(result.get());
+
+		// rejected even if the ring has room
+		Collector collector = new Collector();
+		ring.consume(collector);
+		assertEquals(1, collector.events.size());
+		assertFalse(ring.publish(null, new FieldValueChangedEvent("d1", "f1", 3)));
+	}
+
+	@Test
+	public void consumerInterrupted() throws InterruptedException {
+		for (WaitStrategy strategy : new WaitStrategy[] { WaitStrategy.BLOCKING, WaitStrategy.SLEEPING, WaitStrategy.YIELDING }) {
+			final RingBuffer ring = new RingBuffer(4, strategy);
+			final AtomicBoolean interrupted = new AtomicBoolean();
+			Thread consumer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ring.consume(new Collector());
+					} catch (InterruptedException e) {
+						interrupted.set(true);
+					}
+				}
+			});
+			consumer.start();
+			consumer.interrupt();
+			consumer.join(5000);
+			assertFalse(consumer.isAlive());
+			assertTrue(strategy.name(), interrupted.get());
+		}
+	}
+}
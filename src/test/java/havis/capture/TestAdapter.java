@@ -0,0 +1,111 @@
+package havis.capture;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adapter keeping devices, subscriptions and values in memory
+ */
+class TestAdapter implements Adapter {
+
+	Map<String, Device> devices = new ConcurrentHashMap<>();
+	Set<FieldRef> subscribed = Collections.newSetFromMap(new ConcurrentHashMap<FieldRef, Boolean>());
+	Map<FieldRef, Object> values = new ConcurrentHashMap<>();
+	AdapterListener listener;
+
+	void put(String id, String field) {
+		Device device = new Device();
+		device.setFields(Collections.singletonMap(field, new Field()));
+		devices.put(id, device);
+	}
+
+	@Override
+	public void open(AdapterListener listener) throws AdapterException {
+		this.listener = listener;
+	}
+
+	@Override
+	public void close() throws AdapterException {
+	}
+
+	@Override
+	public Map<String, Device> getDevices() throws AdapterException {
+		return devices;
+	}
+
+	@Override
+	public void subscribe(String device, String field) throws AdapterException {
+		subscribed.add(new FieldRef(device, field));
+	}
+
+	@Override
+	public void unsubscribe(String device, String field) throws AdapterException {
+		subscribed.remove(new FieldRef(device, field));
+	}
+
+	@Override
+	public Object getValue(String device, String field) throws AdapterException {
+		return values.get(new FieldRef(device, field));
+	}
+
+	@Override
+	public void setValue(String device, String field, Object value) throws AdapterException {
+		values.put(new FieldRef(device, field), value);
+	}
+
+	@Override
+	public String add(Device device) throws AdapterException {
+		devices.put(device.getId(), device);
+		return device.getId();
+	}
+
+	@Override
+	public void remove(String device) throws AdapterException {
+		devices.remove(device);
+		for (Iterator<FieldRef> i = subscribed.iterator(); i.hasNext();)
+			if (i.next().getDevice().equals(device))
+				i.remove();
+	}
+
+	@Override
+	public String getLabel(String device) throws AdapterException {
+		return null;
+	}
+
+	@Override
+	public void setLabel(String device, String label) throws AdapterException {
+	}
+
+	@Override
+	public String getLabel(String device, String field) throws AdapterException {
+		return null;
+	}
+
+	@Override
+	public void setLabel(String device, String field, String label) throws AdapterException {
+	}
+
+	@Override
+	public Map<String, String> getProperties() throws AdapterException {
+		return null;
+	}
+
+	@Override
+	public void setProperties(Map<String, String> properties) throws AdapterException {
+	}
+
+	@Override
+	public void setProperty(String name, String value) throws AdapterException {
+	}
+
+	@Override
+	public void setProperty(String device, String name, String value) throws AdapterException {
+	}
+
+	@Override
+	public void setProperty(String device, String field, String name, String value) throws AdapterException {
+	}
+}